@@ -3,16 +3,18 @@
 
 package org.mozilla.android.sync.test;
 
+import java.util.Arrays;
+
 import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
 import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksRepository;
 import org.mozilla.android.sync.repositories.android.AndroidBrowserRepository;
 import org.mozilla.android.sync.repositories.android.AndroidBrowserRepositoryDatabaseHelper;
 import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
 import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
 import org.mozilla.android.sync.test.helpers.BookmarkHelpers;
 
 public class AndroidBrowserBookmarksRepositoryTest extends AndroidBrowserRepositoryTest {
-  
   @Override
   protected AndroidBrowserRepository getRepository() {
     return new AndroidBrowserBookmarksRepository();
@@ -68,6 +70,11 @@ public class AndroidBrowserBookmarksRepositoryTest extends AndroidBrowserReposit
     fetchMultipleRecordsByGuids(record0, record1, record2);
   }
   
+  public void testFetchManyRecordsByGuids() {
+    BookmarkRecord[] corpus = new BookmarkGenerator(BATCH_SEED).generate(1203);
+    fetchManyRecordsByGuids(Arrays.copyOfRange(corpus, BookmarkGenerator.ROOT_GUIDS.length, corpus.length));
+  }
+
   @Override
   public void testFetchNoRecordByGuid() {
     fetchNoRecordByGuid(BookmarkHelpers.createSeparator());
@@ -108,6 +115,12 @@ public class AndroidBrowserBookmarksRepositoryTest extends AndroidBrowserReposit
     basicStoreTest(BookmarkHelpers.createSeparator());
   }
   
+  public void testStoreConcurrently() {
+    // Skip the generated roots; the repository manages its own.
+    BookmarkRecord[] corpus = new BookmarkGenerator(BATCH_SEED).generate(503);
+    basicStoreConcurrentlyTest(Arrays.copyOfRange(corpus, BookmarkGenerator.ROOT_GUIDS.length, corpus.length));
+  }
+
   @Override
   public void testRemoteNewerTimeStamp() {
     BookmarkRecord local = BookmarkHelpers.createBookmark1();
@@ -9,10 +9,10 @@ import org.mozilla.android.sync.repositories.android.AndroidBrowserRepository;
 import org.mozilla.android.sync.repositories.android.AndroidBrowserRepositoryDatabaseHelper;
 import org.mozilla.android.sync.repositories.domain.HistoryRecord;
 import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.helpers.HistoryGenerator;
 import org.mozilla.android.sync.test.helpers.HistoryHelpers;
 
 public class AndroidBrowserHistoryRepositoryTest extends AndroidBrowserRepositoryTest {
-  
   @Override
   protected AndroidBrowserRepository getRepository() {
     return new AndroidBrowserHistoryRepository();
@@ -68,6 +68,10 @@ public class AndroidBrowserHistoryRepositoryTest extends AndroidBrowserRepositor
     fetchMultipleRecordsByGuids(record0, record1, record2);
   }
   
+  public void testFetchManyRecordsByGuids() {
+    fetchManyRecordsByGuids(new HistoryGenerator(BATCH_SEED).generate(1200));
+  }
+
   @Override
   public void testFetchNoRecordByGuid() {
     fetchNoRecordByGuid(HistoryHelpers.createHistory1());
@@ -83,6 +87,10 @@ public class AndroidBrowserHistoryRepositoryTest extends AndroidBrowserRepositor
     basicStoreTest(HistoryHelpers.createHistory1());
   }
   
+  public void testStoreConcurrently() {
+    basicStoreConcurrentlyTest(new HistoryGenerator(BATCH_SEED).generate(500));
+  }
+
   @Override
   public void testRemoteNewerTimeStamp() {
     HistoryRecord local = HistoryHelpers.createHistory1();
@@ -8,8 +8,15 @@ import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksData
 import org.mozilla.android.sync.repositories.android.DBUtils;
 import org.mozilla.android.sync.repositories.android.AndroidBrowserMirrorBookmarkSynchronizer;
 import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.helpers.BookmarkCursorDecoder;
+import org.mozilla.android.sync.test.helpers.BookmarkFingerprint;
 import org.mozilla.android.sync.test.helpers.BookmarkHelpers;
+import org.mozilla.android.sync.test.helpers.BookmarkMergeJoin;
+import org.mozilla.android.sync.test.helpers.StockBookmarkObserver;
+import org.mozilla.android.sync.test.helpers.StockBookmarkWriter;
+import org.mozilla.android.sync.test.helpers.WaitHelper;
 
+import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -71,17 +78,20 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     expected[1] = getContentValuesStock("BK2", "http://www.bk2.com");
     context.getContentResolver().insert(Browser.BOOKMARKS_URI , expected[0]);
     context.getContentResolver().insert(Browser.BOOKMARKS_URI , expected[1]);
+    assertStockDiff(2, 0, 0);
     
     localSyncStockToMoz();
+    assertStockDiff(0, 0, 0);
     
     // Get records from local db, verify both are there
     Cursor cur = helper.fetchAllOrderByAndroidId();
+    BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forMirror(cur);
     cur.moveToFirst();
     int count = 0;
     
     while (!cur.isAfterLast()) {
-      String title = DBUtils.getStringFromCursor(cur, AndroidBrowserBookmarksDatabaseHelper.COL_TITLE);
-      String url = DBUtils.getStringFromCursor(cur, AndroidBrowserBookmarksDatabaseHelper.COL_BMK_URI);
+      String title = decoder.getTitle(cur);
+      String url = decoder.getURI(cur);
       
       // Check to see if this bookmark matches one of ours
       for (ContentValues cv : expected) {
@@ -92,10 +102,8 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
       }
       
       // Check that bookmark is in the mobile folder
-      String parentID = DBUtils.getStringFromCursor(cur, AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_ID);
-      String parentName = DBUtils.getStringFromCursor(cur, AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_NAME);
-      assertEquals(DBUtils.MOBILE_PARENT_ID, parentID);
-      assertEquals(DBUtils.MOBILE_PARENT_NAME, parentName);
+      assertEquals(DBUtils.MOBILE_PARENT_ID, decoder.getParentID(cur));
+      assertEquals(DBUtils.MOBILE_PARENT_NAME, decoder.getParentName(cur));
       
       cur.moveToNext();
     }
@@ -122,8 +130,10 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     // Add both bookmarks to moz db
     helper.insert(records[0]);
     helper.insert(records[1]);
+    assertStockDiff(0, 0, 1);
     
     localSyncStockToMoz();
+    assertStockDiff(0, 0, 0);
     
     // Verify that one record is marked as deleted and other not in moz db
     Cursor cur = helper.fetch(new String[] { records[0].guid, records[1].guid } );
@@ -153,10 +163,11 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     // the url of the other and insert into stock db
     records[0].title = "New title";
     records[1].bookmarkURI = "http://uri.new.com";
-    storeToStock(records[0]);
-    storeToStock(records[1]);
+    storeToStock(records);
+    assertStockDiff(0, 2, 0);
     
     localSyncStockToMoz();
+    assertStockDiff(0, 0, 0);
     
     // Verification step
     Cursor cur = helper.fetchAllOrderByAndroidId();
@@ -168,6 +179,145 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     cur.close();
   }
   
+  // Test applying a merge join to the mirror, including linked duplicates
+  public void testMergeJoinReconciles() {
+    BookmarkRecord[] records = new BookmarkRecord[] {
+        BookmarkHelpers.createBookmark1(),
+        BookmarkHelpers.createBookmark2(),
+        BookmarkHelpers.createBookmark1(),
+        BookmarkHelpers.createBookmark2()
+    };
+    for (int i = 0; i < 3; i++) {
+      helper.insert(records[i]);
+    }
+    storeToStock(records[0], records[2]);
+
+    // Stale title, a link to a stock row that's gone, a second link to the
+    // same stock row, and a stock bookmark the mirror hasn't seen.
+    helper.updateTitleUri(records[0].guid, "Stale title", records[0].bookmarkURI);
+    helper.updateAndroidId(records[1].guid, records[2].androidID + 1000);
+    // The duplicate matches stock too: tied rows come back in no
+    // particular order, so either may be the one that's joined.
+    records[3].androidID = records[2].androidID;
+    records[3].title = records[2].title;
+    records[3].bookmarkURI = records[2].bookmarkURI;
+    helper.insert(records[3]);
+    context.getContentResolver().insert(Browser.BOOKMARKS_URI, getContentValuesStock("BK3", "http://www.bk3.com"));
+    assertEquals(1, assertStockDiff(1, 1, 1).duplicates);
+
+    BookmarkMergeJoin.Reconciler reconciler = new BookmarkMergeJoin.Reconciler(helper);
+    Cursor stock = BookmarkMergeJoin.queryStock(context.getContentResolver());
+    Cursor mirror = helper.fetchAllOrderByAndroidId();
+    try {
+      BookmarkMergeJoin.run(stock, mirror, reconciler);
+    } finally {
+      stock.close();
+      mirror.close();
+    }
+    assertEquals(3, reconciler.apply());
+    assertEquals(1, reconciler.duplicates.size());
+    String duplicate = reconciler.duplicates.get(0);
+    assertTrue(duplicate.equals(records[2].guid) || duplicate.equals(records[3].guid));
+
+    // Duplicates are reported, not reconciled away.
+    assertEquals(1, assertStockDiff(0, 0, 0).duplicates);
+  }
+
+  // Test reconciling only what changed since the observer last looked
+  public void testObservedStockChanges() throws InterruptedException {
+    StockBookmarkObserver observer = new StockBookmarkObserver(context.getContentResolver());
+    observer.register();
+    try {
+      // Nothing is known yet, but both tables are empty, so their
+      // fingerprints agree and no rescan is needed
+      assertTrue(observer.isLost());
+      BookmarkMergeJoin.Counts counts = new BookmarkMergeJoin.Counts();
+      observer.reconcile(helper, counts);
+      assertEquals(0, counts.inserted);
+      assertEquals(0, observer.fullScanCount());
+
+      context.getContentResolver().insert(Browser.BOOKMARKS_URI, getContentValuesStock("BK1", "http://www.bk1.com"));
+      assertTrue(observer.awaitChange(WaitHelper.DEFAULT_TIMEOUT));
+
+      // Either just the dirty row or, where the platform doesn't say which
+      // row changed, a rescan; the result is the same
+      counts = new BookmarkMergeJoin.Counts();
+      observer.reconcile(helper, counts);
+      assertEquals(1, counts.inserted);
+      assertEquals(0, counts.modified);
+      assertEquals(0, counts.deleted);
+    } finally {
+      observer.unregister();
+    }
+  }
+  
+  // Test that history-only changes don't cause a reconcile
+  public void testObservedHistoryChangesIgnored() throws InterruptedException {
+    ContentResolver resolver = context.getContentResolver();
+    resolver.insert(Browser.BOOKMARKS_URI, getContentValuesStock("BK1", "http://www.bk1.com"));
+    localSyncStockToMoz();
+
+    StockBookmarkObserver observer = new StockBookmarkObserver(resolver);
+    observer.register();
+    try {
+      // Stock and mirror agree, so even the first reconcile skips the join
+      BookmarkMergeJoin.Counts counts = new BookmarkMergeJoin.Counts();
+      observer.reconcile(helper, counts);
+      assertEquals(0, counts.inserted + counts.modified + counts.deleted);
+      assertEquals(0, observer.fullScanCount());
+
+      ContentValues visit = new ContentValues();
+      visit.put(Browser.BookmarkColumns.BOOKMARK, 0);
+      visit.put(Browser.BookmarkColumns.TITLE, "Visited");
+      visit.put(Browser.BookmarkColumns.URL, "http://www.visited.com");
+      resolver.insert(Browser.BOOKMARKS_URI, visit);
+      assertTrue(observer.awaitChange(WaitHelper.DEFAULT_TIMEOUT));
+
+      counts = new BookmarkMergeJoin.Counts();
+      observer.reconcile(helper, counts);
+      assertEquals(0, counts.inserted + counts.modified + counts.deleted);
+      assertEquals(0, observer.fullScanCount());
+    } finally {
+      observer.unregister();
+    }
+  }
+  
+  // Test that an unchanged pair of tables is recognized without a sync
+  public void testFingerprintNoChange() {
+    ContentResolver resolver = context.getContentResolver();
+    BookmarkFingerprint.Tracker tracker = new BookmarkFingerprint.Tracker();
+    assertTrue(tracker.changed(resolver, helper));
+    assertFalse(tracker.changed(resolver, helper));
+
+    Uri stockUri = resolver.insert(Browser.BOOKMARKS_URI, getContentValuesStock("BK1", "http://www.bk1.com"));
+    assertTrue(tracker.changed(resolver, helper));
+    assertFalse(tracker.changed(resolver, helper));
+
+    localSyncStockToMoz();
+    assertTrue(tracker.changed(resolver, helper));
+    localSyncStockToMoz();
+    assertFalse(tracker.changed(resolver, helper));
+    assertTrue(BookmarkFingerprint.ofStock(resolver).sameContent(BookmarkFingerprint.ofMirror(helper)));
+
+    // A same-length edit in stock changes its fingerprint
+    ContentValues retitled = new ContentValues();
+    retitled.put(Browser.BookmarkColumns.TITLE, "BK2");
+    resolver.update(stockUri, retitled, null, null);
+    assertTrue(tracker.changed(resolver, helper));
+    assertFalse(BookmarkFingerprint.ofStock(resolver).sameContent(BookmarkFingerprint.ofMirror(helper)));
+    localSyncStockToMoz();
+    assertTrue(BookmarkFingerprint.ofStock(resolver).sameContent(BookmarkFingerprint.ofMirror(helper)));
+    tracker.changed(resolver, helper);
+
+    // So does one to the mirror's copy
+    Cursor cur = helper.fetchAllOrderByAndroidId();
+    cur.moveToFirst();
+    BookmarkRecord record = DBUtils.bookmarkFromMirrorCursor(cur);
+    cur.close();
+    helper.updateTitleUri(record.guid, "BK3", record.bookmarkURI);
+    assertTrue(tracker.changed(resolver, helper));
+  }
+  
   /*
    * Tests for syncing from Mozilla's local bookmark db
    * to the android stock bookmarks database
@@ -185,8 +335,7 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     // deleted in local moz db
     helper.insert(records[0]);
     helper.insert(records[1]);
-    storeToStock(records[0]);
-    storeToStock(records[1]);
+    storeToStock(records);
     helper.markDeleted(records[0].guid);
     
     localSyncMozToStock(new String[] { records[0].guid, records[1].guid });
@@ -222,11 +371,12 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     
     // Verify only one record is added to stock db and it is the correct one
     Cursor cur = fetchAllFromStock();
+    BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forStock(cur);
     cur.moveToFirst();
     int count = 0;
     while (!cur.isAfterLast()) {
-      assertEquals(records[1].title, DBUtils.getStringFromCursor(cur, Browser.BookmarkColumns.TITLE));
-      assertEquals(records[1].bookmarkURI, DBUtils.getStringFromCursor(cur, Browser.BookmarkColumns.URL));
+      assertEquals(records[1].title, decoder.getTitle(cur));
+      assertEquals(records[1].bookmarkURI, decoder.getURI(cur));
       count ++;
       cur.moveToNext();
     }
@@ -273,8 +423,7 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     // Add both to moz snapshot and stock
     helper.insert(records[0]);
     helper.insert(records[1]);
-    storeToStock(records[0]);
-    storeToStock(records[1]);
+    storeToStock(records);
     
     // Modify the title of one of the bookmarks and
     // the url of the other and insert into stock db
@@ -295,6 +444,31 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     cur.close();
   }
   
+  // Push enough bookmarks into stock to need several batches
+  public void testBatchedStoreToStock() {
+    BookmarkRecord[] records = new BookmarkRecord[250];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = BookmarkHelpers.createBookmark1();
+      records[i].title = "Batched " + i;
+      records[i].bookmarkURI = "http://batched.example.com/" + i;
+      helper.insert(records[i]);
+    }
+    storeToStock(records);
+
+    Cursor cur = fetchAllFromStock();
+    assertEquals(records.length, cur.getCount());
+    cur.close();
+
+    // Every mirror row now points at its stock row
+    for (BookmarkRecord record : records) {
+      assertTrue(record.androidID > 0);
+      cur = helper.fetch(new String[] { record.guid });
+      cur.moveToFirst();
+      assertEquals(record.androidID, DBUtils.getLongFromCursor(cur, AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID));
+      cur.close();
+    }
+  }
+
   // Test local sync without giving any guids (just make to sure we don't crash)
   public void testSyncMozToStockNoGuids() {
     localSyncMozToStock(null);
@@ -345,11 +519,29 @@ public class AndroidBrowserMirrorBookmarkSynchronizerTest extends
     sync.syncAndroidBrowserToMirror();
   }
   
-  private void storeToStock(BookmarkRecord record) {
-    ContentValues cv = getContentValuesStock(record.title, record.bookmarkURI);
-    Uri resourceUri = context.getContentResolver().insert(Browser.BOOKMARKS_URI, cv);
-    long androidId = DBUtils.getAndroidIdFromUri(resourceUri);
-    helper.updateAndroidId(record.guid, androidId);
+  private void storeToStock(BookmarkRecord... records) {
+    StockBookmarkWriter writer = new StockBookmarkWriter(context.getContentResolver(), helper);
+    for (BookmarkRecord record : records) {
+      writer.insert(record);
+    }
+    writer.flush();
+  }
+  
+  // Reconcile stock against the mirror and check what differs
+  private BookmarkMergeJoin.Counts assertStockDiff(int inserted, int modified, int deleted) {
+    Cursor stock = BookmarkMergeJoin.queryStock(context.getContentResolver());
+    Cursor mirror = helper.fetchAllOrderByAndroidId();
+    BookmarkMergeJoin.Counts counts = new BookmarkMergeJoin.Counts();
+    try {
+      BookmarkMergeJoin.run(stock, mirror, counts);
+    } finally {
+      stock.close();
+      mirror.close();
+    }
+    assertEquals(inserted, counts.inserted);
+    assertEquals(modified, counts.modified);
+    assertEquals(deleted, counts.deleted);
+    return counts;
   }
   
   private Cursor fetchAllFromStock() {
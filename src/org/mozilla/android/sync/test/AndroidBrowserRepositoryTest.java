@@ -14,6 +14,8 @@ import org.mozilla.android.sync.repositories.delegates.RepositorySessionFetchRec
 import org.mozilla.android.sync.repositories.delegates.RepositorySessionGuidsSinceDelegate;
 import org.mozilla.android.sync.repositories.delegates.RepositorySessionWipeDelegate;
 import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.helpers.ChunkedFetcher;
+import org.mozilla.android.sync.test.helpers.ConcurrentWaitHarness;
 import org.mozilla.android.sync.test.helpers.DefaultFetchDelegate;
 import org.mozilla.android.sync.test.helpers.DefaultSessionCreationDelegate;
 import org.mozilla.android.sync.test.helpers.DefaultStoreDelegate;
@@ -25,14 +27,18 @@ import org.mozilla.android.sync.test.helpers.ExpectFinishDelegate;
 import org.mozilla.android.sync.test.helpers.ExpectFinishFailDelegate;
 import org.mozilla.android.sync.test.helpers.ExpectGuidsSinceDelegate;
 import org.mozilla.android.sync.test.helpers.ExpectInvalidRequestFetchDelegate;
+import org.mozilla.android.sync.test.helpers.ExpectNoGUIDsSinceDelegate;
 import org.mozilla.android.sync.test.helpers.ExpectStoredDelegate;
+import org.mozilla.android.sync.test.helpers.WaitHelper;
 
 import android.content.Context;
 import android.test.ActivityInstrumentationTestCase2;
 import android.util.Log;
 
 public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentationTestCase2<MainActivity> {
-  
+  // Seed for the generated corpora in the batch and scale tests.
+  protected static final long BATCH_SEED = 5005;
+
   protected AndroidBrowserRepositoryDatabaseHelper helper;
   
   public AndroidBrowserRepositoryTest() {
@@ -113,6 +119,20 @@ public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentati
     };
   }
 
+  /**
+   * Issue a separate store for each record, all in flight at once, then wait
+   * for each of them to report success. Not a batch or a transaction.
+   */
+  public static void storeConcurrently(final RepositorySession session, final Record[] records) {
+    ConcurrentWaitHarness harness = new ConcurrentWaitHarness();
+    for (Record record : records) {
+      ExpectStoredDelegate delegate = new ExpectStoredDelegate(record.guid);
+      harness.track(delegate, "store " + record.guid);
+      session.store(record, delegate);
+    }
+    harness.awaitAll(WaitHelper.DEFAULT_TIMEOUT);
+  }
+
   public static Runnable fetchAllRunnable(final RepositorySession session, final ExpectFetchDelegate delegate) {
     return new Runnable() {
       @Override
@@ -156,6 +176,15 @@ public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentati
     return fetchRunnable(session, guids, new ExpectFetchDelegate(expected));
   }
 
+  public static Runnable chunkedFetchRunnable(final RepositorySession session, final String[] guids, final String[] expected) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        ChunkedFetcher.fetch(session, guids, new ExpectFetchDelegate(expected));
+      }
+    };
+  }
+
   protected abstract AndroidBrowserRepository getRepository();
   protected abstract AndroidBrowserRepositoryDatabaseHelper getDatabaseHelper();
   protected abstract void verifyExpectedRecordReturned(Record expected, Record actual);
@@ -202,6 +231,17 @@ public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentati
     performWait(fetchAllRunnable(session, expectedGUIDs));
   }
   
+  protected void basicStoreConcurrentlyTest(Record[] records) {
+    prepEmptySession();
+    AndroidBrowserRepositorySession session = getSession();
+    String[] expectedGUIDs = new String[records.length];
+    for (int i = 0; i < records.length; i++) {
+      expectedGUIDs[i] = records[i].guid;
+    }
+    storeConcurrently(session, records);
+    performWait(fetchAllRunnable(session, expectedGUIDs));
+  }
+
   /*
    * Tests for guidsSince
    */
@@ -294,6 +334,27 @@ public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentati
     performWait(fetchRunnable(session, expected));
   }
   
+  /*
+   * Fetch more GUIDs than SQLite allows bound parameters in one statement,
+   * some of which don't exist.
+   */
+  protected void fetchManyRecordsByGuids(Record[] records) {
+    prepEmptySession();
+    AndroidBrowserRepositorySession session = getSession();
+    storeConcurrently(session, records);
+
+    String[] expected = new String[records.length];
+    String[] guids = new String[records.length + 200];
+    for (int i = 0; i < records.length; i++) {
+      expected[i] = records[i].guid;
+      guids[i] = records[i].guid;
+    }
+    for (int i = records.length; i < guids.length; i++) {
+      guids[i] = Utils.generateGuid();
+    }
+    performWait(chunkedFetchRunnable(session, guids, expected));
+  }
+
   protected void fetchNoRecordByGuid(Record record) {
     prepEmptySession();
     AndroidBrowserRepositorySession session = getSession();
@@ -606,6 +667,22 @@ public abstract class AndroidBrowserRepositoryTest extends ActivityInstrumentati
     performWait(run);
   }  
   
+  /*
+   * Many operations in flight against the same session at once.
+   */
+  public void testConcurrentGuidsSince() {
+    prepEmptySession();
+    AndroidBrowserRepositorySession session = getSession();
+    ConcurrentWaitHarness harness = new ConcurrentWaitHarness();
+    for (int i = 0; i < 20; i++) {
+      ExpectNoGUIDsSinceDelegate delegate = new ExpectNoGUIDsSinceDelegate();
+      harness.track(delegate, "guidsSince " + i);
+      session.guidsSince(0, delegate);
+    }
+    harness.awaitAll(WaitHelper.DEFAULT_TIMEOUT);
+    assertEquals(20, harness.getCompletedCount());
+  }
+
   private void verifyInactiveException(Exception ex) {
     if (ex.getClass() != InactiveSessionException.class) {
       fail("Wrong exception type");
@@ -0,0 +1,427 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.fetchAllRunnable;
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.fetchRunnable;
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.fetchSinceRunnable;
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.guidsSinceRunnable;
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.storeConcurrently;
+import static org.mozilla.android.sync.test.AndroidBrowserRepositoryTest.storeRunnable;
+
+import java.util.HashMap;
+
+import org.mozilla.android.sync.repositories.InvalidRequestException;
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionWipeDelegate;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.BookmarkHelpers;
+import org.mozilla.android.sync.test.helpers.ChunkedFetcher;
+import org.mozilla.android.sync.test.helpers.DefaultFetchDelegate;
+import org.mozilla.android.sync.test.helpers.DefaultSessionCreationDelegate;
+import org.mozilla.android.sync.test.helpers.DefaultStoreDelegate;
+import org.mozilla.android.sync.test.helpers.ExpectFetchDelegate;
+import org.mozilla.android.sync.test.helpers.ExpectGuidsSinceDelegate;
+import org.mozilla.android.sync.test.helpers.ExpectInvalidRequestFetchDelegate;
+import org.mozilla.android.sync.test.helpers.ExpectStoredDelegate;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository;
+import org.mozilla.android.sync.test.helpers.InMemoryRepositorySession;
+import org.mozilla.android.sync.test.helpers.MeteredExecutor;
+import org.mozilla.android.sync.test.helpers.RecordStream;
+import org.mozilla.android.sync.test.helpers.SessionPipeline;
+import org.mozilla.android.sync.test.helpers.WaitHelper;
+
+import junit.framework.TestCase;
+
+/**
+ * Runs the repository session scenarios from AndroidBrowserRepositoryTest
+ * against {@link InMemoryRepository}. Needs neither a device nor an
+ * emulator, so it's the quick check to run before an instrumentation run.
+ */
+public class InMemoryRepositorySessionTest extends TestCase {
+
+  protected InMemoryRepository repository;
+  protected RepositorySession session;
+
+  protected void performWait(Runnable runnable) throws AssertionError {
+    WaitHelper.getTestWaiter().performWait(runnable);
+  }
+
+  @Override
+  public void setUp() {
+    repository = new InMemoryRepository();
+    repository.createSession(new DefaultSessionCreationDelegate() {
+      @Override
+      public void onSessionCreated(RepositorySession sess) {
+        session = sess;
+      }
+    }, null);
+    assertNotNull(session);
+  }
+
+  public void testStore() {
+    BookmarkRecord record = BookmarkHelpers.createBookmark1();
+    performWait(storeRunnable(session, record));
+    assertEquals(1, repository.size());
+  }
+
+  public void testFetchAll() {
+    BookmarkRecord record0 = BookmarkHelpers.createBookmark1();
+    BookmarkRecord record1 = BookmarkHelpers.createBookmark2();
+    performWait(storeRunnable(session, record0));
+    performWait(storeRunnable(session, record1));
+    performWait(fetchAllRunnable(session, new String[] { record0.guid, record1.guid }));
+  }
+
+  public void testGuidsSince() {
+    long timestamp = System.currentTimeMillis();
+    BookmarkRecord record0 = BookmarkHelpers.createLivemark();
+    BookmarkRecord record1 = BookmarkHelpers.createMicrosummary();
+    BookmarkRecord old = BookmarkHelpers.createQuery();
+    record0.lastModified = timestamp + 1000;
+    record1.lastModified = timestamp + 1500;
+    old.lastModified = timestamp - 1000;
+    performWait(storeRunnable(session, record0));
+    performWait(storeRunnable(session, record1));
+    performWait(storeRunnable(session, old));
+    performWait(guidsSinceRunnable(session, timestamp, new String[] { record0.guid, record1.guid }));
+  }
+
+  public void testGuidsSinceAfterReplace() {
+    long timestamp = 1000000000;
+    BookmarkRecord record = BookmarkHelpers.createBookmark1();
+    record.lastModified = timestamp;
+    performWait(storeRunnable(session, record));
+
+    BookmarkRecord newer = BookmarkHelpers.createBookmark2();
+    newer.guid = record.guid;
+    newer.lastModified = timestamp + 2000;
+    performWait(storeRunnable(session, newer));
+
+    // The index must follow the replacement, not keep the old timestamp.
+    performWait(guidsSinceRunnable(session, timestamp + 1000, new String[] { record.guid }));
+    performWait(guidsSinceRunnable(session, timestamp, new String[] { record.guid }));
+    performWait(guidsSinceRunnable(session, timestamp + 3000, new String[] {}));
+  }
+
+  public void testChangeJournal() {
+    BookmarkRecord record0 = BookmarkHelpers.createBookmark1();
+    BookmarkRecord record1 = BookmarkHelpers.createBookmark2();
+    performWait(storeRunnable(session, record0));
+    performWait(storeRunnable(session, record1));
+    long sequence = repository.currentSequence();
+    assertEquals(2, sequence);
+
+    // Nothing since.
+    performWait(guidsChangedSinceRunnable(sequence, new String[] {}));
+
+    // A deletion and an insertion, with timestamps far in the past: the
+    // journal doesn't care about clocks.
+    BookmarkRecord deleted = BookmarkHelpers.createBookmark1();
+    deleted.guid = record0.guid;
+    deleted.deleted = true;
+    deleted.lastModified = record0.lastModified;
+    BookmarkRecord record2 = BookmarkHelpers.createQuery();
+    record2.lastModified = 1;
+    performWait(storeRunnable(session, deleted));
+    performWait(storeRunnable(session, record2));
+
+    InMemoryRepository.Change[] changes = repository.changesSince(sequence);
+    assertEquals(2, changes.length);
+    assertEquals(record0.guid, changes[0].guid);
+    assertTrue(changes[0].deleted);
+    assertEquals(record2.guid, changes[1].guid);
+    assertFalse(changes[1].deleted);
+    performWait(guidsChangedSinceRunnable(sequence, new String[] { record0.guid, record2.guid }));
+
+    // Wiping journals a deletion for everything that was there.
+    repository.clear();
+    assertEquals(7, repository.currentSequence());
+
+    repository.truncateJournal(5);
+    assertEquals(7, repository.currentSequence());
+    assertEquals(2, repository.changesSince(5).length);
+    assertNull(repository.changesSince(4));
+  }
+
+  protected Runnable guidsChangedSinceRunnable(final long sequence, final String[] expected) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        ((InMemoryRepositorySession) session).guidsChangedSince(sequence, new ExpectGuidsSinceDelegate(expected));
+      }
+    };
+  }
+
+  public void testFetchSince() {
+    long timestamp = System.currentTimeMillis();
+    BookmarkRecord record0 = BookmarkHelpers.createFolder();
+    BookmarkRecord record1 = BookmarkHelpers.createBookmark2();
+    record0.lastModified = timestamp;
+    record1.lastModified = timestamp + 3000;
+    performWait(storeRunnable(session, record0));
+    performWait(storeRunnable(session, record1));
+    performWait(fetchSinceRunnable(session, timestamp + 1, new String[] { record1.guid }));
+    performWait(fetchSinceRunnable(session, timestamp, new String[] { record0.guid, record1.guid }));
+  }
+
+  public void testFetchByGuids() {
+    BookmarkRecord record0 = BookmarkHelpers.createBookmark1();
+    BookmarkRecord record1 = BookmarkHelpers.createBookmark2();
+    BookmarkRecord record2 = BookmarkHelpers.createQuery();
+    performWait(storeRunnable(session, record0));
+    performWait(storeRunnable(session, record1));
+    performWait(storeRunnable(session, record2));
+    performWait(fetchRunnable(session, new String[] { record0.guid, record2.guid }));
+    performWait(fetchRunnable(session, new String[] { "nonexistentguid" }, new String[] {}));
+  }
+
+  public void testChunkedFetch() {
+    BookmarkRecord[] records = new BookmarkGenerator(7007).generate(50);
+    String[] guids = new String[records.length + 5];
+    String[] expected = new String[records.length];
+    for (int i = 0; i < records.length; i++) {
+      repository.put(records[i].guid, records[i]);
+      guids[i] = expected[i] = records[i].guid;
+    }
+    for (int i = records.length; i < guids.length; i++) {
+      guids[i] = "missing" + i;
+    }
+    final ExpectFetchDelegate delegate = new ExpectFetchDelegate(expected);
+    final String[] fetchGuids = guids;
+    performWait(new Runnable() {
+      @Override
+      public void run() {
+        ChunkedFetcher.fetch(session, fetchGuids, 7, delegate);
+      }
+    });
+    assertEquals(records.length, delegate.recordCount());
+  }
+
+  public void testFetchNoGuids() {
+    performWait(fetchRunnable(session, new String[] {}, new ExpectInvalidRequestFetchDelegate()));
+    performWait(fetchRunnable(session, null, new ExpectInvalidRequestFetchDelegate()));
+  }
+
+  public void testWipe() {
+    performWait(storeRunnable(session, BookmarkHelpers.createBookmark1()));
+    performWait(storeRunnable(session, BookmarkHelpers.createBookmark2()));
+    performWait(new Runnable() {
+      @Override
+      public void run() {
+        session.wipe(new RepositorySessionWipeDelegate() {
+          public void onWipeSucceeded() {
+            WaitHelper.getTestWaiter().performNotify();
+          }
+          public void onWipeFailed(Exception ex) {
+            WaitHelper.getTestWaiter().performNotify(new AssertionError("wipe should have succeeded"));
+          }
+        });
+      }
+    });
+    assertEquals(0, repository.size());
+  }
+
+  public void testStoreBatch() {
+    BookmarkRecord local = BookmarkHelpers.createBookmark1();
+    local.lastModified = 1000000000;
+    repository.put(local.guid, local);
+
+    BookmarkRecord older = BookmarkHelpers.createBookmark2();
+    older.guid = local.guid;
+    older.lastModified = local.lastModified - 100;
+    BookmarkRecord first = BookmarkHelpers.createQuery();
+    first.lastModified = 1000000000;
+    BookmarkRecord second = BookmarkHelpers.createMicrosummary();
+    second.guid = first.guid;
+    second.lastModified = first.lastModified + 100;
+
+    final int[] stored = new int[1];
+    ((InMemoryRepositorySession) session).storeBatch(new Record[] { older, first, second },
+        new DefaultStoreDelegate() {
+      @Override
+      public void onStoreSucceeded(Record record) {
+        stored[0]++;
+      }
+    });
+    assertEquals(3, stored[0]);
+    assertEquals(2, repository.size());
+
+    ExpectFetchDelegate delegate = new ExpectFetchDelegate(new String[] { local.guid });
+    performWait(fetchRunnable(session, new String[] { local.guid }, delegate));
+    BookmarkHelpers.verifyExpectedRecordReturned(local, (BookmarkRecord) delegate.recordAt(0));
+
+    delegate = new ExpectFetchDelegate(new String[] { first.guid });
+    performWait(fetchRunnable(session, new String[] { first.guid }, delegate));
+    BookmarkHelpers.verifyExpectedRecordReturned(second, (BookmarkRecord) delegate.recordAt(0));
+  }
+
+  public void testStoreNullFails() {
+    final Exception[] failures = new Exception[2];
+    ((InMemoryRepositorySession) session).store(null, new DefaultStoreDelegate() {
+      @Override
+      public void onStoreFailed(Exception ex) {
+        failures[0] = ex;
+      }
+    });
+    ((InMemoryRepositorySession) session).storeBatch(new Record[] { BookmarkHelpers.createBookmark1(), null },
+        new DefaultStoreDelegate() {
+      @Override
+      public void onStoreFailed(Exception ex) {
+        failures[1] = ex;
+      }
+    });
+    assertTrue(failures[0] instanceof InvalidRequestException);
+    assertTrue(failures[1] instanceof InvalidRequestException);
+    assertEquals(0, repository.size());
+  }
+
+  public void testStreamSince() {
+    BookmarkRecord[] records = new BookmarkGenerator(6006).generate(250);
+    long timestamp = 1000000000;
+    for (int i = 0; i < records.length; i++) {
+      records[i].lastModified = timestamp + i;
+      repository.put(records[i].guid, records[i]);
+    }
+
+    final int[] fetched = new int[1];
+    final boolean[] completed = new boolean[1];
+    RecordStream stream = ((InMemoryRepositorySession) session).streamSince(timestamp + 50,
+        new DefaultFetchDelegate() {
+      @Override
+      public void onFetchedRecord(Record record) {
+        fetched[0]++;
+      }
+
+      @Override
+      public void onFetchCompleted() {
+        completed[0] = true;
+      }
+    });
+
+    // Nothing happens until the consumer asks.
+    assertEquals(0, fetched[0]);
+    assertEquals(64, stream.request(64));
+    assertEquals(64, fetched[0]);
+    assertFalse(completed[0]);
+
+    int total = 64;
+    int delivered;
+    do {
+      delivered = stream.request(64);
+      total += delivered;
+    } while (delivered == 64 && !completed[0]);
+    assertEquals(200, total);
+    assertEquals(200, fetched[0]);
+    assertTrue(completed[0]);
+    assertEquals(0, stream.request(64));
+  }
+
+  public void testStreamSinceWithWrites() {
+    BookmarkRecord[] records = new BookmarkGenerator(6007).generate(200);
+    for (int i = 0; i < 100; i++) {
+      repository.put(records[i].guid, records[i]);
+    }
+
+    final HashMap<String, Integer> fetched = new HashMap<String, Integer>();
+    RecordStream stream = ((InMemoryRepositorySession) session).streamSince(0, new DefaultFetchDelegate() {
+      @Override
+      public void onFetchedRecord(Record record) {
+        Integer seen = fetched.get(record.guid);
+        fetched.put(record.guid, seen == null ? 1 : seen + 1);
+      }
+
+      @Override
+      public void onFetchCompleted() {
+      }
+    });
+    assertEquals(10, stream.request(10));
+
+    // Writes while the stream is open don't disturb it. New records may or
+    // may not be seen, depending on where they land relative to the cursor,
+    // but every record present throughout is seen exactly once.
+    for (int i = 100; i < records.length; i++) {
+      performWait(storeRunnable(session, records[i]));
+    }
+    while (stream.request(64) == 64) {
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(1), fetched.get(records[i].guid));
+    }
+    for (Integer seen : fetched.values()) {
+      assertEquals(1, seen.intValue());
+    }
+  }
+
+  public void testRemoteNewerTimeStamp() {
+    BookmarkRecord local = BookmarkHelpers.createBookmark1();
+    BookmarkRecord remote = BookmarkHelpers.createBookmark2();
+    local.lastModified = 1000000000;
+    performWait(storeRunnable(session, local));
+    remote.guid = local.guid;
+    remote.lastModified = local.lastModified + 1000;
+    performWait(storeRunnable(session, remote));
+
+    ExpectFetchDelegate delegate = new ExpectFetchDelegate(new String[] { local.guid });
+    performWait(fetchAllRunnable(session, delegate));
+    BookmarkHelpers.verifyExpectedRecordReturned(remote, (BookmarkRecord) delegate.recordAt(0));
+  }
+
+  public void testLocalNewerTimeStamp() {
+    BookmarkRecord local = BookmarkHelpers.createBookmark1();
+    BookmarkRecord remote = BookmarkHelpers.createBookmark2();
+    local.lastModified = 1000000000;
+    performWait(storeRunnable(session, local));
+    remote.guid = local.guid;
+    remote.lastModified = local.lastModified - 100;
+    performWait(storeRunnable(session, remote));
+
+    ExpectFetchDelegate delegate = new ExpectFetchDelegate(new String[] { local.guid });
+    performWait(fetchAllRunnable(session, delegate));
+    BookmarkHelpers.verifyExpectedRecordReturned(local, (BookmarkRecord) delegate.recordAt(0));
+  }
+
+  public void testSharedExecutor() {
+    MeteredExecutor executor = new MeteredExecutor(2, 8);
+    try {
+      ((InMemoryRepositorySession) session).setExecutor(executor);
+      Record[] records = new BookmarkGenerator(1414).generate(200);
+      storeConcurrently(session, records);
+      assertEquals(records.length, repository.size());
+
+      String[] guids = new String[records.length];
+      for (int i = 0; i < records.length; i++) {
+        guids[i] = records[i].guid;
+      }
+      performWait(fetchAllRunnable(session, guids));
+
+      assertEquals(records.length + 1, executor.getSubmittedCount());
+      assertTrue(executor.getThreadsUsedCount() <= 2);
+      assertTrue(executor.getPeakQueueDepth() <= 8);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testPipeline() {
+    Record[] records = new BookmarkGenerator(1515).generate(300);
+    String[] guids = new String[records.length];
+    SessionPipeline pipeline = new SessionPipeline(session, 50);
+    try {
+      for (int i = 0; i < records.length; i++) {
+        guids[i] = records[i].guid;
+        pipeline.store(records[i], new ExpectStoredDelegate(records[i].guid));
+      }
+      // Issued after every store, so it sees all of them.
+      pipeline.fetchAll(new ExpectFetchDelegate(guids));
+      pipeline.drain(WaitHelper.DEFAULT_TIMEOUT);
+      assertEquals(records.length + 1, pipeline.getCompletedCount());
+      assertEquals(records.length, repository.size());
+    } finally {
+      pipeline.close();
+    }
+  }
+}
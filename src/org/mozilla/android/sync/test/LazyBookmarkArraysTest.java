@@ -0,0 +1,84 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.BookmarkHelpers;
+import org.mozilla.android.sync.test.helpers.LazyBookmarkArrays;
+import org.mozilla.android.sync.test.helpers.LazyJSONStringArray;
+
+import junit.framework.TestCase;
+
+public class LazyBookmarkArraysTest extends TestCase {
+
+  public void testNotParsedUntilRead() {
+    LazyBookmarkArrays arrays = new LazyBookmarkArrays(BookmarkHelpers.createBookmark1());
+    assertFalse(arrays.isParsed());
+    List<String> tags = arrays.tags();
+    assertTrue(arrays.isParsed());
+    assertEquals(3, tags.size());
+    assertEquals("tag1", tags.get(0));
+    assertEquals("tag3", tags.get(2));
+  }
+
+  public void testParsedOnce() {
+    LazyBookmarkArrays arrays = new LazyBookmarkArrays(BookmarkHelpers.createFolder());
+    assertSame(arrays.children(), arrays.children());
+  }
+
+  public void testReparsedAfterReassignment() {
+    BookmarkRecord record = BookmarkHelpers.createBookmark1();
+    LazyBookmarkArrays arrays = new LazyBookmarkArrays(record);
+    assertEquals(3, arrays.tags().size());
+    record.tags = "[\"other\"]";
+    assertEquals(1, arrays.tags().size());
+    assertEquals("other", arrays.tags().get(0));
+  }
+
+  public void testNullAndEmpty() {
+    assertTrue(new LazyJSONStringArray(null).get().isEmpty());
+    assertTrue(new LazyJSONStringArray("[]").get().isEmpty());
+    LazyBookmarkArrays arrays = new LazyBookmarkArrays(BookmarkHelpers.createSeparator());
+    assertTrue(arrays.children().isEmpty());
+  }
+
+  public void testNotAnArray() {
+    LazyJSONStringArray array = new LazyJSONStringArray("{\"a\": 1}");
+    try {
+      array.get();
+      fail("Expected IllegalArgumentException.");
+    } catch (IllegalArgumentException e) {
+      // Good.
+    }
+  }
+
+  public void testUnmodifiable() {
+    try {
+      new LazyJSONStringArray("[\"a\"]").get().add("b");
+      fail("Expected UnsupportedOperationException.");
+    } catch (UnsupportedOperationException e) {
+      // Good.
+    }
+  }
+
+  public void testGeneratedTreeChildrenMatchParents() {
+    BookmarkRecord[] records = new BookmarkGenerator(1313).generate(500);
+    HashMap<String, BookmarkRecord> byGuid = new HashMap<String, BookmarkRecord>();
+    for (BookmarkRecord record : records) {
+      byGuid.put(record.guid, record);
+    }
+    for (BookmarkRecord record : records) {
+      if (!"folder".equals(record.type)) {
+        continue;
+      }
+      for (String child : new LazyBookmarkArrays(record).children()) {
+        assertEquals(record.guid, byGuid.get(child).parentID);
+      }
+    }
+  }
+}
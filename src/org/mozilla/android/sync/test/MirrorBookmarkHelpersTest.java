@@ -0,0 +1,135 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import org.mozilla.android.sync.MainActivity;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.android.DBUtils;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.helpers.BookmarkCursorDecoder;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.BookmarkHelpers;
+import org.mozilla.android.sync.test.helpers.BookmarkRowView;
+import org.mozilla.android.sync.test.helpers.MirrorBookmarkWriter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.test.ActivityInstrumentationTestCase2;
+
+/**
+ * Small-fixture checks that the mirror helpers agree with the helper and
+ * DBUtils they stand in for.
+ */
+public class MirrorBookmarkHelpersTest extends ActivityInstrumentationTestCase2<MainActivity> {
+  public static final long SEED = 7007;
+
+  protected AndroidBrowserBookmarksDatabaseHelper helper;
+  protected BookmarkRecord[] records;
+
+  public MirrorBookmarkHelpersTest() {
+    super(MainActivity.class);
+  }
+
+  public Context getApplicationContext() {
+    return this.getInstrumentation().getTargetContext().getApplicationContext();
+  }
+
+  @Override
+  public void setUp() {
+    helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    helper.wipe();
+    records = new BookmarkGenerator(SEED).generate(40);
+    for (int i = 0; i < records.length; i++) {
+      records[i].androidID = i + 1;
+    }
+  }
+
+  @Override
+  public void tearDown() {
+    helper.wipe();
+    helper.close();
+  }
+
+  protected BookmarkRecord fetchOne(String guid) {
+    Cursor cur = helper.fetch(new String[] { guid });
+    try {
+      assertTrue(cur.moveToFirst());
+      return DBUtils.bookmarkFromMirrorCursor(cur);
+    } finally {
+      cur.close();
+    }
+  }
+
+  public void testWriterMatchesHelper() {
+    MirrorBookmarkWriter writer = new MirrorBookmarkWriter(helper);
+    try {
+      for (BookmarkRecord record : records) {
+        assertTrue(writer.insert(record) > 0);
+      }
+      for (BookmarkRecord record : records) {
+        BookmarkRecord read = fetchOne(record.guid);
+        assertEquals(record.guid, read.guid);
+        assertEquals(record.title, read.title);
+        assertEquals(record.bookmarkURI, read.bookmarkURI);
+        assertEquals(record.parentID, read.parentID);
+        assertEquals(record.type, read.type);
+        assertEquals(record.androidID, read.androidID);
+        assertFalse(read.deleted);
+      }
+
+      writer.markDeleted(records[0].guid);
+      assertTrue(fetchOne(records[0].guid).deleted);
+      writer.updateTitleUri(records[1].guid, "Renamed", "http://renamed.example.com/");
+      assertEquals("Renamed", fetchOne(records[1].guid).title);
+      assertEquals("http://renamed.example.com/", fetchOne(records[1].guid).bookmarkURI);
+      writer.updateAndroidId(records[2].guid, 9999);
+      assertEquals(9999, fetchOne(records[2].guid).androidID);
+
+      assertTrue(writer.idForGuid(records[3].guid) > 0);
+      assertEquals(-1, writer.idForGuid("nonexistent"));
+
+      // Every call after the first of its kind reused a compiled statement.
+      assertEquals(5, writer.getStatements().getCompiledCount());
+    } finally {
+      writer.close();
+    }
+  }
+
+  public void testDecoderMatchesMirrorCursor() {
+    for (BookmarkRecord record : records) {
+      helper.insert(record);
+    }
+    Cursor cur = helper.fetchAllOrderByAndroidId();
+    try {
+      BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forMirror(cur);
+      BookmarkRecord reused = new BookmarkRecord();
+      int rows = 0;
+      for (cur.moveToFirst(); !cur.isAfterLast(); cur.moveToNext()) {
+        BookmarkRecord expected = DBUtils.bookmarkFromMirrorCursor(cur);
+        BookmarkHelpers.verifyAllFieldsEqual(expected, decoder.decode(cur));
+        BookmarkHelpers.verifyAllFieldsEqual(expected, decoder.decode(cur, reused));
+        rows++;
+      }
+      assertEquals(records.length, rows);
+    } finally {
+      cur.close();
+    }
+  }
+
+  public void testRowViewCopyMatchesDecoder() {
+    for (BookmarkRecord record : records) {
+      helper.insert(record);
+    }
+    Cursor cur = helper.fetchAllOrderByAndroidId();
+    try {
+      BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forMirror(cur);
+      BookmarkRowView view = new BookmarkRowView(decoder);
+      for (cur.moveToFirst(); !cur.isAfterLast(); cur.moveToNext()) {
+        BookmarkHelpers.verifyAllFieldsEqual(decoder.decode(cur), view.fill(cur).copy());
+      }
+    } finally {
+      cur.close();
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.test.helpers.CachedPayloadCrypto;
+import org.mozilla.android.sync.test.helpers.DecryptedPayloadCache;
+import org.mozilla.android.sync.test.helpers.MockRecord;
+import org.mozilla.android.sync.test.helpers.ParallelBatch;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+import org.mozilla.android.sync.test.helpers.ReusableEnvelopeDecoder;
+
+import junit.framework.TestCase;
+
+public class PayloadCryptoTest extends TestCase {
+  protected PayloadCrypto crypto;
+  protected ExecutorService executor;
+
+  @Override
+  public void setUp() {
+    crypto = PayloadCrypto.withSeededKeys(2121);
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @Override
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  public void testRoundTrip() throws Exception {
+    MockRecord record = new MockRecord("abcdefghijkl", "mock", 1000, false, 42);
+    Envelope envelope = crypto.encrypt(record.toJSON());
+    MockRecord decrypted = new MockRecord("abcdefghijkl", "mock", 1000, false, 0);
+    decrypted.initFromJSON(crypto.decrypt(envelope));
+    assertTrue(record.eq(decrypted));
+  }
+
+  public void testTamperedCiphertext() throws Exception {
+    Envelope envelope = crypto.encrypt("{\"myValue\": 1}");
+    char[] chars = envelope.ciphertext.toCharArray();
+    chars[0] = chars[0] == 'A' ? 'B' : 'A';
+    try {
+      crypto.decrypt(new Envelope(new String(chars), envelope.iv, envelope.hmac));
+      fail("Expected HMAC failure.");
+    } catch (PayloadCrypto.HMACVerificationException e) {
+      // Good.
+    }
+  }
+
+  public void testReusableDecoder() throws Exception {
+    ReusableEnvelopeDecoder decoder = new ReusableEnvelopeDecoder(crypto);
+    // Grow past the decoder's initial buffers partway through.
+    for (int i = 0; i < 3000; i += 97) {
+      StringBuilder sb = new StringBuilder("{\"myValue\": \"");
+      for (int j = 0; j < i; j++) {
+        sb.append((char) ('a' + j % 26));
+      }
+      String cleartext = sb.append("\"}").toString();
+      String envelope = crypto.encrypt(cleartext).toJSON();
+
+      assertEquals(cleartext.length(), decoder.decrypt(envelope));
+      assertEquals(cleartext, decoder.cleartextString());
+      ByteBuffer buffer = decoder.cleartext();
+      assertEquals(cleartext.length(), buffer.remaining());
+      assertEquals('{', (char) buffer.get(0));
+    }
+  }
+
+  // json-simple, which ExtendedJSONObject serializes with, writes '/' as "\/".
+  public void testReusableDecoderEscapedEnvelope() throws Exception {
+    ReusableEnvelopeDecoder decoder = new ReusableEnvelopeDecoder(crypto);
+    int escaped = 0;
+    for (int i = 0; i < 20; i++) {
+      String cleartext = "{\"myValue\": " + i + "}";
+      Envelope envelope = crypto.encrypt(cleartext);
+      Map<String, String> fields = new HashMap<String, String>();
+      fields.put("ciphertext", envelope.ciphertext);
+      fields.put("IV", envelope.iv);
+      fields.put("hmac", envelope.hmac);
+      String json = JSONValue.toJSONString(fields);
+      if (json.indexOf("\\/") >= 0) {
+        escaped++;
+      }
+      assertEquals(cleartext.length(), decoder.decrypt(json));
+      assertEquals(cleartext, decoder.cleartextString());
+    }
+    assertTrue(escaped > 0);
+  }
+
+  public void testReusableDecoderTampered() throws Exception {
+    ReusableEnvelopeDecoder decoder = new ReusableEnvelopeDecoder(crypto);
+    Envelope envelope = crypto.encrypt("{\"myValue\": 1}");
+    char[] chars = envelope.hmac.toCharArray();
+    chars[0] = chars[0] == '0' ? '1' : '0';
+    try {
+      decoder.decrypt(new Envelope(envelope.ciphertext, envelope.iv, new String(chars)).toJSON());
+      fail("Expected HMAC failure.");
+    } catch (PayloadCrypto.HMACVerificationException e) {
+      // Good.
+    }
+  }
+
+  public void testCachedInteroperates() throws Exception {
+    PayloadCrypto cached = new CachedPayloadCrypto(crypto, 2222);
+    for (int i = 0; i < 10; i++) {
+      String cleartext = "{\"myValue\": " + i + "}";
+      assertEquals(cleartext, crypto.decrypt(cached.encrypt(cleartext)));
+      assertEquals(cleartext, cached.decrypt(crypto.encrypt(cleartext)));
+      assertEquals(cleartext, cached.decrypt(cached.encrypt(cleartext)));
+    }
+  }
+
+  public void testCachedAcrossThreads() throws Exception {
+    final PayloadCrypto cached = new CachedPayloadCrypto(crypto, 2223);
+    ArrayList<String> cleartexts = new ArrayList<String>();
+    for (int i = 0; i < 500; i++) {
+      cleartexts.add("{\"myValue\": " + i + "}");
+    }
+    List<String> roundTripped = new ParallelBatch<String, String>(executor, 4, 16).apply(cleartexts,
+        new ParallelBatch.Transform<String, String>() {
+      @Override
+      public String apply(String in) throws Exception {
+        return cached.decrypt(cached.encrypt(in));
+      }
+    });
+    assertEquals(cleartexts, roundTripped);
+  }
+
+  public void testPayloadCache() throws Exception {
+    DecryptedPayloadCache cache = new DecryptedPayloadCache();
+    Envelope envelope = crypto.encrypt("{\"myValue\": 1}");
+    assertEquals("{\"myValue\": 1}", cache.decrypt(crypto, "abcdefghijkl", 1000, envelope));
+    assertEquals("{\"myValue\": 1}", cache.decrypt(crypto, "abcdefghijkl", 1000, envelope));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+
+    // Same keys in another instance hit; a new modified time or new keys miss.
+    cache.decrypt(new CachedPayloadCrypto(crypto, 1), "abcdefghijkl", 1000, envelope);
+    assertEquals(2, cache.getHitCount());
+    Envelope changed = crypto.encrypt("{\"myValue\": 2}");
+    assertEquals("{\"myValue\": 2}", cache.decrypt(crypto, "abcdefghijkl", 2000, changed));
+    PayloadCrypto rotated = PayloadCrypto.withSeededKeys(3131);
+    cache.decrypt(rotated, "abcdefghijkl", 1000, rotated.encrypt("{\"myValue\": 1}"));
+    assertEquals(3, cache.getMissCount());
+    assertEquals(3, cache.size());
+  }
+
+  public void testPayloadCacheEvicts() throws Exception {
+    DecryptedPayloadCache cache = new DecryptedPayloadCache(2000);
+    ArrayList<Envelope> envelopes = new ArrayList<Envelope>();
+    for (int i = 0; i < 100; i++) {
+      envelopes.add(crypto.encrypt(new MockRecord("guid" + i, "mock", 1000, false, i).toJSON()));
+      cache.decrypt(crypto, "guid" + i, 1000, envelopes.get(i));
+      assertTrue(cache.getBytes() <= 2000);
+    }
+    assertTrue(cache.getEvictionCount() > 0);
+    assertEquals(100 - cache.getEvictionCount(), cache.size());
+
+    // The most recent record is still there; the first is long gone.
+    cache.decrypt(crypto, "guid99", 1000, envelopes.get(99));
+    assertEquals(1, cache.getHitCount());
+    cache.decrypt(crypto, "guid0", 1000, envelopes.get(0));
+    assertEquals(101, cache.getMissCount());
+  }
+
+  public void testParallelBatchKeepsOrder() throws Exception {
+    ArrayList<MockRecord> records = new ArrayList<MockRecord>();
+    for (int i = 0; i < 1000; i++) {
+      records.add(new MockRecord("guid" + i, "mock", i, false, i));
+    }
+    ParallelBatch<MockRecord, Envelope> encrypt = new ParallelBatch<MockRecord, Envelope>(executor, 4, 16);
+    List<Envelope> envelopes = encrypt.apply(records, new ParallelBatch.Transform<MockRecord, Envelope>() {
+      @Override
+      public Envelope apply(MockRecord in) throws Exception {
+        return crypto.encrypt(in.toJSON());
+      }
+    });
+
+    ParallelBatch<Envelope, String> decrypt = new ParallelBatch<Envelope, String>(executor, 4, 16);
+    List<String> cleartexts = decrypt.apply(envelopes, new ParallelBatch.Transform<Envelope, String>() {
+      @Override
+      public String apply(Envelope in) throws Exception {
+        return crypto.decrypt(in);
+      }
+    });
+
+    assertEquals(records.size(), cleartexts.size());
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals(records.get(i).toJSON(), cleartexts.get(i));
+    }
+  }
+
+  public void testParallelBatchFailure() throws Exception {
+    ArrayList<Integer> in = new ArrayList<Integer>();
+    for (int i = 0; i < 200; i++) {
+      in.add(i);
+    }
+    ParallelBatch<Integer, Integer> batch = new ParallelBatch<Integer, Integer>(executor, 4, 16);
+    try {
+      batch.apply(in, new ParallelBatch.Transform<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer i) throws Exception {
+          if (i == 150) {
+            throw new IllegalStateException("Bad record " + i);
+          }
+          return i;
+        }
+      });
+      fail("Expected failure.");
+    } catch (IllegalStateException e) {
+      assertEquals("Bad record 150", e.getMessage());
+    }
+  }
+}
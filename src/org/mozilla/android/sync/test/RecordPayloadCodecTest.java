@@ -0,0 +1,120 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.repositories.domain.HistoryRecord;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.HistoryGenerator;
+import org.mozilla.android.sync.test.helpers.PayloadJSONReader;
+import org.mozilla.android.sync.test.helpers.RecordPayloadCodec;
+
+import junit.framework.TestCase;
+
+public class RecordPayloadCodecTest extends TestCase {
+
+  protected void assertBookmarksEqual(BookmarkRecord expected, BookmarkRecord actual) {
+    assertEquals(expected.guid, actual.guid);
+    assertEquals(expected.type, actual.type);
+    assertEquals(expected.title, actual.title);
+    assertEquals(expected.bookmarkURI, actual.bookmarkURI);
+    assertEquals(expected.description, actual.description);
+    assertEquals(expected.loadInSidebar, actual.loadInSidebar);
+    assertEquals(expected.tags, actual.tags);
+    assertEquals(expected.keyword, actual.keyword);
+    assertEquals(expected.parentID, actual.parentID);
+    assertEquals(expected.parentName, actual.parentName);
+    assertEquals(expected.queryID, actual.queryID);
+    assertEquals(expected.children, actual.children);
+    assertEquals(expected.siteURI, actual.siteURI);
+    assertEquals(expected.feedURI, actual.feedURI);
+    assertEquals(expected.pos, actual.pos);
+    assertEquals(expected.deleted, actual.deleted);
+  }
+
+  public void testBookmarkRoundTrip() {
+    for (BookmarkRecord record : new BookmarkGenerator(2323).generate(300)) {
+      String json = RecordPayloadCodec.encodeBookmark(record);
+      assertBookmarksEqual(record, RecordPayloadCodec.decodeBookmark(json));
+
+      // The output is JSON a tree parser agrees with.
+      JSONObject tree = (JSONObject) JSONValue.parse(json);
+      assertEquals(record.guid, tree.get("id"));
+      assertEquals(record.title, tree.get("title"));
+      assertEquals(record.parentID, tree.get("parentid"));
+      Object pos = tree.get("pos");
+      assertEquals(record.pos, pos == null ? null : String.valueOf(pos));
+      if (pos != null) {
+        assertTrue(pos instanceof Long);
+      }
+    }
+  }
+
+  public void testHistoryRoundTrip() {
+    for (HistoryRecord record : new HistoryGenerator(2323).generate(100)) {
+      HistoryRecord decoded = RecordPayloadCodec.decodeHistory(RecordPayloadCodec.encodeHistory(record));
+      assertEquals(record.guid, decoded.guid);
+      assertEquals(record.title, decoded.title);
+      assertEquals(record.histURI, decoded.histURI);
+      assertEquals(record.visits, decoded.visits);
+    }
+  }
+
+  public void testEscapes() {
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = "abcdefghijkl";
+    record.title = "Quote \" backslash \\ newline \n tab \t bell \u0007 snowman \u2603";
+    String json = RecordPayloadCodec.encodeBookmark(record);
+    assertEquals(record.title, RecordPayloadCodec.decodeBookmark(json).title);
+    assertEquals(record.title, ((JSONObject) JSONValue.parse(json)).get("title"));
+  }
+
+  public void testSyncShapes() {
+    String json = "{ \"id\": \"sep1\", \"type\": \"separator\", \"pos\": 3, " +
+                  "\"unknown\": {\"nested\": [1, \"]\", {\"a\": null}]}, " +
+                  "\"description\": null, \"tags\": [\"a\", \"b\"], \"loadInSidebar\": false }";
+    BookmarkRecord record = RecordPayloadCodec.decodeBookmark(json);
+    assertEquals("sep1", record.guid);
+    assertEquals("separator", record.type);
+    assertEquals("3", record.pos);
+    assertNull(record.description);
+    assertEquals("[\"a\", \"b\"]", record.tags);
+    assertFalse(record.loadInSidebar);
+  }
+
+  public void testPosIsNumber() {
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = "abcdefghijkl";
+    record.pos = "3";
+    assertEquals(Long.valueOf(3), ((JSONObject) JSONValue.parse(RecordPayloadCodec.encodeBookmark(record))).get("pos"));
+    record.pos = "03";
+    assertEquals("03", ((JSONObject) JSONValue.parse(RecordPayloadCodec.encodeBookmark(record))).get("pos"));
+  }
+
+  public void testTruncated() {
+    String json = "{ \"id\": \"abc\\\"def\", \"title\": \"snow\\u2603man\", \"pos\": -12, " +
+                  "\"unknown\": {\"nested\": [1, \"]\\\\\", {\"a\": null}]}, \"skipped\": \"x\\\"y\", " +
+                  "\"tags\": [\"a\", \"b\"], \"loadInSidebar\": true }";
+    assertEquals("abc\"def", RecordPayloadCodec.decodeBookmark(json).guid);
+    for (int i = 0; i < json.length(); i++) {
+      try {
+        RecordPayloadCodec.decodeBookmark(json.substring(0, i));
+        fail("Expected IllegalArgumentException for " + json.substring(0, i));
+      } catch (IllegalArgumentException e) {
+        // Good.
+      }
+    }
+  }
+
+  public void testMalformed() {
+    try {
+      new PayloadJSONReader("[1, 2]");
+      fail("Expected IllegalArgumentException.");
+    } catch (IllegalArgumentException e) {
+      // Good.
+    }
+  }
+}
@@ -0,0 +1,27 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test;
+
+import junit.framework.TestSuite;
+import android.test.InstrumentationTestRunner;
+import android.test.suitebuilder.TestSuiteBuilder;
+
+/**
+ * The instrumentation runner for this package. A run without -e class or
+ * -e package gets every test except the benchmarks in the bench package,
+ * which insert tens of thousands of rows each. Run those explicitly with
+ *   -e package org.mozilla.android.sync.test.bench
+ */
+public class SyncTestRunner extends InstrumentationTestRunner {
+  public static final String TEST_PACKAGE = "org.mozilla.android.sync.test";
+  public static final String BENCH_PACKAGE = TEST_PACKAGE + ".bench";
+
+  @Override
+  public TestSuite getAllTests() {
+    return new TestSuiteBuilder(getClass().getName(), getContext().getClassLoader())
+      .includePackages(TEST_PACKAGE)
+      .excludePackages(BENCH_PACKAGE)
+      .build();
+  }
+}
@@ -0,0 +1,94 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.lang.reflect.Method;
+
+import android.os.Debug;
+
+/**
+ * Counts bytes allocated by the current thread.
+ *
+ * On a device this uses android.os.Debug's allocation counting. On a HotSpot
+ * JVM it uses com.sun.management.ThreadMXBean, reached by reflection because
+ * java.lang.management isn't part of the Android API we compile against.
+ * Elsewhere stop() returns -1.
+ */
+public abstract class AllocationMeter {
+  public abstract void start();
+
+  /**
+   * @return bytes allocated by this thread since start(), or -1 if unknown.
+   */
+  public abstract long stop();
+
+  public static AllocationMeter create() {
+    try {
+      Debug.resetThreadAllocSize();
+      return new DeviceAllocationMeter();
+    } catch (RuntimeException e) {
+      // Not on a device.
+    }
+    try {
+      return new HotSpotAllocationMeter();
+    } catch (Exception e) {
+      return new AllocationMeter() {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public long stop() {
+          return -1;
+        }
+      };
+    }
+  }
+
+  private static class DeviceAllocationMeter extends AllocationMeter {
+    @Override
+    public void start() {
+      Debug.resetThreadAllocSize();
+      Debug.startAllocCounting();
+    }
+
+    @Override
+    public long stop() {
+      Debug.stopAllocCounting();
+      return Debug.getThreadAllocSize();
+    }
+  }
+
+  private static class HotSpotAllocationMeter extends AllocationMeter {
+    private final Object threadBean;
+    private final Method allocatedBytes;
+    private long startBytes;
+
+    HotSpotAllocationMeter() throws Exception {
+      threadBean = Class.forName("java.lang.management.ManagementFactory")
+                        .getMethod("getThreadMXBean").invoke(null);
+      allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                            .getMethod("getThreadAllocatedBytes", long.class);
+      read();
+    }
+
+    private long read() {
+      try {
+        return (Long) allocatedBytes.invoke(threadBean, Thread.currentThread().getId());
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public void start() {
+      startBytes = read();
+    }
+
+    @Override
+    public long stop() {
+      return read() - startBytes;
+    }
+  }
+}
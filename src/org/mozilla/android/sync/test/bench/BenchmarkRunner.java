@@ -0,0 +1,119 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Minimal warmup-then-measure harness for benchmarks that need to run both on
+ * a plain JVM and on a device, where JMH isn't available.
+ *
+ * Each invocation of an operation is timed separately; setUp runs before
+ * every invocation and is not timed.
+ */
+public class BenchmarkRunner {
+
+  public interface Operation {
+    public void setUp();
+    public void run();
+  }
+
+  public static abstract class SimpleOperation implements Operation {
+    @Override
+    public void setUp() {
+    }
+  }
+
+  public static class Result {
+    public final String name;
+    public final long[] nanos;
+
+    public Result(String name, long[] nanos) {
+      this.name = name;
+      this.nanos = nanos;
+      Arrays.sort(this.nanos);
+    }
+
+    public long min() {
+      return nanos[0];
+    }
+
+    public long median() {
+      return nanos[nanos.length / 2];
+    }
+
+    public double mean() {
+      long total = 0;
+      for (long n : nanos) {
+        total += n;
+      }
+      return ((double) total) / nanos.length;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-48s %12.1f us/op  (min %.1f, mean %.1f, n=%d)",
+                           name, median() / 1000.0, min() / 1000.0,
+                           mean() / 1000.0, nanos.length);
+    }
+  }
+
+  private final int warmupIterations;
+  private final int measuredIterations;
+  private final PrintStream out;
+
+  public BenchmarkRunner(int warmupIterations, int measuredIterations, PrintStream out) {
+    this.warmupIterations = warmupIterations;
+    this.measuredIterations = measuredIterations;
+    this.out = out;
+  }
+
+  public BenchmarkRunner() {
+    this(5, 20, System.out);
+  }
+
+  public Result measure(String name, Operation op) {
+    for (int i = 0; i < warmupIterations; i++) {
+      op.setUp();
+      op.run();
+    }
+    long[] nanos = new long[measuredIterations];
+    for (int i = 0; i < measuredIterations; i++) {
+      op.setUp();
+      long start = System.nanoTime();
+      op.run();
+      nanos[i] = System.nanoTime() - start;
+    }
+    Result result = new Result(name, nanos);
+    if (out != null) {
+      out.println(result);
+    }
+    return result;
+  }
+
+  /**
+   * Run op once (after warmup) under an {@link AllocationMeter} and report the
+   * bytes allocated by this thread per unit of work, e.g. per record.
+   *
+   * @return bytes per unit, or a negative number if allocation can't be measured
+   *         here.
+   */
+  public double measureAllocation(String name, Operation op, int units) {
+    for (int i = 0; i < warmupIterations; i++) {
+      op.setUp();
+      op.run();
+    }
+    AllocationMeter meter = AllocationMeter.create();
+    op.setUp();
+    meter.start();
+    op.run();
+    long bytes = meter.stop();
+    double perUnit = bytes < 0 ? -1 : ((double) bytes) / units;
+    if (out != null) {
+      out.println(String.format("%-48s %12.1f bytes/unit  (%d units)", name, perUnit, units));
+    }
+    return perUnit;
+  }
+}
@@ -0,0 +1,71 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.LazyBookmarkArrays;
+
+/**
+ * Reading tags and children over 10k generated bookmarks, where one record in
+ * INSPECT_EVERY is inspected (three reads of each field) and the rest are only
+ * passed through. Compares parsing the raw string on every read against
+ * {@link LazyBookmarkArrays}, and shows the cost of parsing everything up front.
+ */
+public class BookmarkArrayParseBenchmark {
+  public static final int RECORDS = 10000;
+  public static final int INSPECT_EVERY = 20;
+  public static final int READS = 3;
+
+  protected static int inspected(int i) {
+    return i % INSPECT_EVERY == 0 ? READS : 0;
+  }
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    final BookmarkRecord[] records = new BookmarkGenerator(RepositorySessionBenchmark.SEED).generate(RECORDS);
+
+    runner.measure("parse on every read", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (int i = 0; i < records.length; i++) {
+          for (int r = 0; r < inspected(i); r++) {
+            if (records[i].tags != null) {
+              JSONValue.parse(records[i].tags);
+            }
+            if (records[i].children != null) {
+              JSONValue.parse(records[i].children);
+            }
+          }
+        }
+      }
+    });
+
+    runner.measure("parse every record up front", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (int i = 0; i < records.length; i++) {
+          LazyBookmarkArrays arrays = new LazyBookmarkArrays(records[i]);
+          arrays.tags();
+          arrays.children();
+        }
+      }
+    });
+
+    runner.measure("LazyBookmarkArrays", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (int i = 0; i < records.length; i++) {
+          LazyBookmarkArrays arrays = new LazyBookmarkArrays(records[i]);
+          for (int r = 0; r < inspected(i); r++) {
+            arrays.tags();
+            arrays.children();
+          }
+        }
+      }
+    });
+  }
+}
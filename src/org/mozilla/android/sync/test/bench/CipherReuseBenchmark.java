@@ -0,0 +1,73 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Result;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.CachedPayloadCrypto;
+import org.mozilla.android.sync.test.helpers.MockRecord;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+
+/**
+ * Records per second through encrypt and decrypt, with a Cipher and Mac
+ * created per record ({@link PayloadCrypto}) and reused per thread
+ * ({@link CachedPayloadCrypto}).
+ */
+public class CipherReuseBenchmark {
+  public static final int RECORDS = 10000;
+
+  protected static void report(Result result) {
+    System.out.println(String.format("  %.0f records/s", RECORDS * 1e9 / result.median()));
+  }
+
+  protected static void measure(BenchmarkRunner runner, String name, final PayloadCrypto crypto,
+                                final List<String> cleartexts, final List<Envelope> envelopes) {
+    report(runner.measure("encrypt x" + RECORDS + ", " + name, new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (String cleartext : cleartexts) {
+            crypto.encrypt(cleartext);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }));
+
+    report(runner.measure("decrypt x" + RECORDS + ", " + name, new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (Envelope envelope : envelopes) {
+            crypto.decrypt(envelope);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }));
+  }
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkRunner runner = new BenchmarkRunner(3, 10, System.out);
+    PayloadCrypto perRecord = PayloadCrypto.withSeededKeys(RepositorySessionBenchmark.SEED);
+    PayloadCrypto cached = new CachedPayloadCrypto(perRecord, RepositorySessionBenchmark.SEED);
+
+    List<String> cleartexts = new ArrayList<String>(RECORDS);
+    List<Envelope> envelopes = new ArrayList<Envelope>(RECORDS);
+    for (int i = 0; i < RECORDS; i++) {
+      String cleartext = new MockRecord("mock" + i, "mock", i, false, i).toJSON();
+      cleartexts.add(cleartext);
+      envelopes.add(perRecord.encrypt(cleartext));
+    }
+
+    measure(runner, "getInstance per record", perRecord, cleartexts, envelopes);
+    measure(runner, "per-thread Cipher/Mac", cached, cleartexts, envelopes);
+  }
+}
@@ -0,0 +1,100 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.MockRecord;
+import org.mozilla.android.sync.test.helpers.ParallelBatch;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+
+/**
+ * Encrypting and decrypting (with HMAC verification) 50k {@link MockRecord}
+ * payloads one after another on the calling thread, versus across all cores
+ * with {@link ParallelBatch}.
+ */
+public class Crypto5ParallelBenchmark {
+  public static final int RECORDS = 50000;
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkRunner runner = new BenchmarkRunner(2, 5, System.out);
+    final PayloadCrypto crypto = PayloadCrypto.withSeededKeys(RepositorySessionBenchmark.SEED);
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    final ParallelBatch<MockRecord, Envelope> parallelEncrypt = new ParallelBatch<MockRecord, Envelope>(executor);
+    final ParallelBatch<Envelope, String> parallelDecrypt = new ParallelBatch<Envelope, String>(executor);
+    final ParallelBatch.Transform<MockRecord, Envelope> encrypt = new ParallelBatch.Transform<MockRecord, Envelope>() {
+      @Override
+      public Envelope apply(MockRecord in) throws Exception {
+        return crypto.encrypt(in.toJSON());
+      }
+    };
+    final ParallelBatch.Transform<Envelope, String> decrypt = new ParallelBatch.Transform<Envelope, String>() {
+      @Override
+      public String apply(Envelope in) throws Exception {
+        return crypto.decrypt(in);
+      }
+    };
+
+    final List<MockRecord> records = new ArrayList<MockRecord>(RECORDS);
+    for (int i = 0; i < RECORDS; i++) {
+      records.add(new MockRecord("mock" + i, "mock", i, false, i));
+    }
+    final List<Envelope> envelopes = parallelEncrypt.apply(records, encrypt);
+
+    runner.measure("encrypt x" + RECORDS + ", sequential", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (MockRecord record : records) {
+            encrypt.apply(record);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    runner.measure("encrypt x" + RECORDS + ", parallel", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          parallelEncrypt.apply(records, encrypt);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    runner.measure("decrypt x" + RECORDS + ", sequential", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (Envelope envelope : envelopes) {
+            decrypt.apply(envelope);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    runner.measure("decrypt x" + RECORDS + ", parallel", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          parallelDecrypt.apply(envelopes, decrypt);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,122 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import org.mozilla.android.sync.MainActivity;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.android.DBUtils;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.BookmarkCursorDecoder;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.BookmarkRowView;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.suitebuilder.annotation.LargeTest;
+
+/**
+ * Record-per-row decoding of a 10k-row bookmark mirror, every field: looking
+ * columns up by name for every field (DBUtils.bookmarkFromMirrorCursor) versus
+ * resolving column indexes once per cursor ({@link BookmarkCursorDecoder}),
+ * and against reusing one record or one {@link BookmarkRowView} for every row.
+ * Reports time per pass and bytes allocated per row.
+ */
+@LargeTest
+public class CursorDecodeBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+  public static final int ROWS = 10000;
+  public static final long SEED = 11011;
+
+  protected BenchmarkRunner runner = new BenchmarkRunner(2, 10, System.out);
+  protected AndroidBrowserBookmarksDatabaseHelper helper;
+  protected Cursor cursor;
+
+  public CursorDecodeBenchmark() {
+    super(MainActivity.class);
+  }
+
+  public Context getApplicationContext() {
+    return this.getInstrumentation().getTargetContext().getApplicationContext();
+  }
+
+  @Override
+  public void setUp() {
+    helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    helper.wipe();
+    for (BookmarkRecord record : new BookmarkGenerator(SEED).generate(ROWS)) {
+      helper.insert(record);
+    }
+    cursor = helper.fetchAllOrderByAndroidId();
+  }
+
+  @Override
+  public void tearDown() {
+    cursor.close();
+    helper.wipe();
+    helper.close();
+  }
+
+  protected abstract class CursorPass implements Operation {
+    @Override
+    public void setUp() {
+      cursor.moveToFirst();
+    }
+
+    @Override
+    public void run() {
+      while (!cursor.isAfterLast()) {
+        decodeRow();
+        cursor.moveToNext();
+      }
+    }
+
+    protected abstract void decodeRow();
+  }
+
+  protected void measure(String name, CursorPass pass) {
+    runner.measure(name, pass);
+    runner.measureAllocation(name + " per row", pass, cursor.getCount());
+  }
+
+  public void testDecodeByIndex() {
+    final BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forMirror(cursor);
+    measure("BookmarkCursorDecoder", new CursorPass() {
+      @Override
+      protected void decodeRow() {
+        decoder.decode(cursor);
+      }
+    });
+  }
+
+  public void testBookmarkFromMirrorCursor() {
+    measure("DBUtils.bookmarkFromMirrorCursor", new CursorPass() {
+      @Override
+      protected void decodeRow() {
+        DBUtils.bookmarkFromMirrorCursor(cursor);
+      }
+    });
+  }
+
+  public void testDecodeIntoReusedRecord() {
+    final BookmarkCursorDecoder decoder = BookmarkCursorDecoder.forMirror(cursor);
+    final BookmarkRecord reused = new BookmarkRecord();
+    measure("BookmarkCursorDecoder into reused record", new CursorPass() {
+      @Override
+      protected void decodeRow() {
+        decoder.decode(cursor, reused);
+      }
+    });
+  }
+
+  public void testFillRowView() {
+    final BookmarkRowView view = new BookmarkRowView(BookmarkCursorDecoder.forMirror(cursor));
+    measure("BookmarkRowView.fill", new CursorPass() {
+      @Override
+      protected void decodeRow() {
+        view.fill(cursor);
+      }
+    });
+  }
+}
@@ -0,0 +1,145 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import org.mozilla.android.sync.MainActivity;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.MirrorBookmarkWriter;
+
+import android.content.Context;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.suitebuilder.annotation.LargeTest;
+
+/**
+ * Bulk insert and bulk tombstoning at 10k rows, through
+ * AndroidBrowserBookmarksDatabaseHelper as it is (SQL and ContentValues built
+ * per call) and through {@link MirrorBookmarkWriter} (statements compiled
+ * once per connection and rebound), against the same database.
+ *
+ * Run on a device with
+ *   adb shell am instrument -w -e package org.mozilla.android.sync.test.bench \
+ *     org.mozilla.android.sync.test/org.mozilla.android.sync.test.SyncTestRunner
+ */
+@LargeTest
+public class DatabaseHelperWriteBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+  public static final int ROWS = 10000;
+  public static final long SEED = 10010;
+
+  protected BenchmarkRunner runner = new BenchmarkRunner(1, 3, System.out);
+  protected BookmarkRecord[] records;
+
+  public DatabaseHelperWriteBenchmark() {
+    super(MainActivity.class);
+  }
+
+  public Context getApplicationContext() {
+    return this.getInstrumentation().getTargetContext().getApplicationContext();
+  }
+
+  @Override
+  public void setUp() {
+    records = new BookmarkGenerator(SEED).generate(ROWS);
+  }
+
+  public void testHelperBulkInsert() {
+    final AndroidBrowserBookmarksDatabaseHelper helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    try {
+      runner.measure("helper insert x" + ROWS, new Operation() {
+        @Override
+        public void setUp() {
+          helper.wipe();
+        }
+
+        @Override
+        public void run() {
+          for (BookmarkRecord record : records) {
+            helper.insert(record);
+          }
+        }
+      });
+    } finally {
+      helper.wipe();
+      helper.close();
+    }
+  }
+
+  public void testHelperBulkMarkDeleted() {
+    final AndroidBrowserBookmarksDatabaseHelper helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    try {
+      runner.measure("helper markDeleted x" + ROWS, new Operation() {
+        @Override
+        public void setUp() {
+          helper.wipe();
+          for (BookmarkRecord record : records) {
+            helper.insert(record);
+          }
+        }
+
+        @Override
+        public void run() {
+          for (BookmarkRecord record : records) {
+            helper.markDeleted(record.guid);
+          }
+        }
+      });
+    } finally {
+      helper.wipe();
+      helper.close();
+    }
+  }
+
+  public void testWriterBulkInsert() {
+    final AndroidBrowserBookmarksDatabaseHelper helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    final MirrorBookmarkWriter writer = new MirrorBookmarkWriter(helper);
+    try {
+      runner.measure("cached statements insert x" + ROWS, new Operation() {
+        @Override
+        public void setUp() {
+          helper.wipe();
+        }
+
+        @Override
+        public void run() {
+          for (BookmarkRecord record : records) {
+            writer.insert(record);
+          }
+        }
+      });
+    } finally {
+      writer.close();
+      helper.wipe();
+      helper.close();
+    }
+  }
+
+  public void testWriterBulkMarkDeleted() {
+    final AndroidBrowserBookmarksDatabaseHelper helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    final MirrorBookmarkWriter writer = new MirrorBookmarkWriter(helper);
+    try {
+      runner.measure("cached statements markDeleted x" + ROWS, new Operation() {
+        @Override
+        public void setUp() {
+          helper.wipe();
+          for (BookmarkRecord record : records) {
+            writer.insert(record);
+          }
+        }
+
+        @Override
+        public void run() {
+          for (BookmarkRecord record : records) {
+            writer.markDeleted(record.guid);
+          }
+        }
+      });
+    } finally {
+      writer.close();
+      helper.wipe();
+      helper.close();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.CachedPayloadCrypto;
+import org.mozilla.android.sync.test.helpers.MockRecord;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+import org.mozilla.android.sync.test.helpers.ReusableEnvelopeDecoder;
+
+/**
+ * Decrypting 10k WBO payload envelopes: parsing the envelope into a tree and
+ * decrypting through Strings and fresh byte arrays, versus
+ * {@link ReusableEnvelopeDecoder}. Reports time per pass and bytes allocated
+ * per record.
+ */
+public class EnvelopeDecodeBenchmark {
+  public static final int RECORDS = 10000;
+
+  protected static void measure(BenchmarkRunner runner, String name, SimpleOperation op) {
+    runner.measure(name, op);
+    runner.measureAllocation(name + " per record", op, RECORDS);
+  }
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    final PayloadCrypto crypto = new CachedPayloadCrypto(PayloadCrypto.withSeededKeys(RepositorySessionBenchmark.SEED),
+                                                         RepositorySessionBenchmark.SEED);
+    final ReusableEnvelopeDecoder decoder = new ReusableEnvelopeDecoder(crypto);
+
+    final List<String> payloads = new ArrayList<String>(RECORDS);
+    for (int i = 0; i < RECORDS; i++) {
+      payloads.add(crypto.encrypt(new MockRecord("mock" + i, "mock", i, false, i).toJSON()).toJSON());
+    }
+
+    measure(runner, "decrypt, tree and Strings", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (String payload : payloads) {
+            JSONObject o = (JSONObject) JSONValue.parse(payload);
+            crypto.decrypt(new Envelope((String) o.get("ciphertext"), (String) o.get("IV"), (String) o.get("hmac")));
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+    measure(runner, "decrypt, reused buffers", new SimpleOperation() {
+      @Override
+      public void run() {
+        try {
+          for (String payload : payloads) {
+            decoder.decrypt(payload);
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,55 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.Random;
+
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.bench.RepositorySessionBenchmark.CountingFetchDelegate;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.ChunkedFetcher;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository;
+
+/**
+ * fetch(String[] guids) for 10, 1k and 50k GUIDs out of a 100k-record
+ * repository, issued directly and through {@link ChunkedFetcher}.
+ */
+public class GuidFetchBenchmark {
+  public static final int POPULATION = 100000;
+  public static final int[] GUID_COUNTS = new int[] { 10, 1000, 50000 };
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    Record[] records = new BookmarkGenerator(RepositorySessionBenchmark.SEED).generate(POPULATION);
+    InMemoryRepository repository = new InMemoryRepository();
+    for (Record record : records) {
+      repository.put(record.guid, record);
+    }
+    final RepositorySession session = RepositorySessionBenchmark.createSession(repository);
+    Random random = new Random(RepositorySessionBenchmark.SEED);
+
+    for (int count : GUID_COUNTS) {
+      final String[] guids = new String[count];
+      for (int i = 0; i < count; i++) {
+        guids[i] = records[random.nextInt(records.length)].guid;
+      }
+
+      runner.measure("fetch(" + count + " guids)", new SimpleOperation() {
+        @Override
+        public void run() {
+          session.fetch(guids, new CountingFetchDelegate());
+        }
+      });
+
+      runner.measure("chunked fetch(" + count + " guids)", new SimpleOperation() {
+        @Override
+        public void run() {
+          ChunkedFetcher.fetch(session, guids, new CountingFetchDelegate());
+        }
+      });
+    }
+  }
+}
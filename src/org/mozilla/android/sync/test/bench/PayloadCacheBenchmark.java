@@ -0,0 +1,108 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mozilla.android.sync.test.helpers.CachedPayloadCrypto;
+import org.mozilla.android.sync.test.helpers.DecryptedPayloadCache;
+import org.mozilla.android.sync.test.helpers.MockRecord;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto;
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+
+/**
+ * A sync that fails partway and is retried: 10k records decrypted, then the
+ * same 10k decrypted again, without and with a {@link DecryptedPayloadCache}.
+ *
+ * Cache sizes come from the measured cost of one entry. A cache that holds
+ * the whole batch hits on every retried record. One that holds half gets no
+ * hits on an in-order retry, since LRU has evicted each record before it comes
+ * round again, and about half on a retry in reverse order.
+ */
+public class PayloadCacheBenchmark {
+  public static final int RECORDS = 10000;
+
+  protected static class RetryOperation implements BenchmarkRunner.Operation {
+    private final PayloadCrypto crypto;
+    private final List<MockRecord> records;
+    private final List<Envelope> envelopes;
+    private final long cacheBytes;
+    private final boolean reverseRetry;
+    protected DecryptedPayloadCache cache;
+
+    public RetryOperation(PayloadCrypto crypto, List<MockRecord> records, List<Envelope> envelopes,
+                          long cacheBytes, boolean reverseRetry) {
+      this.crypto = crypto;
+      this.records = records;
+      this.envelopes = envelopes;
+      this.cacheBytes = cacheBytes;
+      this.reverseRetry = reverseRetry;
+    }
+
+    @Override
+    public void setUp() {
+      cache = cacheBytes > 0 ? new DecryptedPayloadCache(cacheBytes) : null;
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (int pass = 0; pass < 2; pass++) {
+          for (int n = 0; n < RECORDS; n++) {
+            int i = (pass == 1 && reverseRetry) ? RECORDS - 1 - n : n;
+            MockRecord record = records.get(i);
+            if (cache == null) {
+              crypto.decrypt(envelopes.get(i));
+            } else {
+              cache.decrypt(crypto, record.guid, record.lastModified, envelopes.get(i));
+            }
+          }
+        }
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  protected static void measure(BenchmarkRunner runner, String name, RetryOperation op) {
+    runner.measure(name, op);
+    if (op.cache != null) {
+      System.out.println("  hits " + op.cache.getHitCount() + ", misses " + op.cache.getMissCount() +
+                         ", " + op.cache.getBytes() + " bytes");
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    BenchmarkRunner runner = new BenchmarkRunner(1, 5, System.out);
+    PayloadCrypto crypto = new CachedPayloadCrypto(PayloadCrypto.withSeededKeys(RepositorySessionBenchmark.SEED),
+                                                   RepositorySessionBenchmark.SEED);
+
+    List<MockRecord> records = new ArrayList<MockRecord>(RECORDS);
+    List<Envelope> envelopes = new ArrayList<Envelope>(RECORDS);
+    for (int i = 0; i < RECORDS; i++) {
+      MockRecord record = new MockRecord("mock" + i, "mock", 1000 + i, false, i);
+      records.add(record);
+      envelopes.add(crypto.encrypt(record.toJSON()));
+    }
+
+    // Measure what the batch costs in an unbounded cache.
+    DecryptedPayloadCache sizing = new DecryptedPayloadCache(Long.MAX_VALUE);
+    for (int i = 0; i < RECORDS; i++) {
+      MockRecord record = records.get(i);
+      sizing.decrypt(crypto, record.guid, record.lastModified, envelopes.get(i));
+    }
+    long all = sizing.getBytes();
+    System.out.println("cache cost: " + all / RECORDS + " bytes per entry, " + all + " for the batch");
+
+    measure(runner, "decrypt twice, no cache",
+            new RetryOperation(crypto, records, envelopes, 0, false));
+    measure(runner, "decrypt twice, cache holds all",
+            new RetryOperation(crypto, records, envelopes, all, false));
+    measure(runner, "decrypt twice, cache holds half, in-order retry",
+            new RetryOperation(crypto, records, envelopes, all / 2, false));
+    measure(runner, "decrypt twice, cache holds half, reverse retry",
+            new RetryOperation(crypto, records, envelopes, all / 2, true));
+  }
+}
@@ -0,0 +1,203 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.repositories.domain.HistoryRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.HistoryGenerator;
+import org.mozilla.android.sync.test.helpers.RecordPayloadCodec;
+
+/**
+ * Decoding and encoding 10k bookmark and 10k history payloads through a
+ * json-simple tree, as ExtendedJSONObject does, versus
+ * {@link RecordPayloadCodec}. Reports time per pass and bytes allocated per
+ * record.
+ */
+public class PayloadCodecBenchmark {
+  public static final int RECORDS = 10000;
+
+  protected static String treeString(JSONObject o, String key) {
+    return (String) o.get(key);
+  }
+
+  protected static String treeArray(JSONObject o, String key) {
+    Object value = o.get(key);
+    return value == null ? null : ((JSONArray) value).toJSONString();
+  }
+
+  // pos arrives as a number; BookmarkRecord keeps it as a string.
+  protected static String treeNumberOrString(JSONObject o, String key) {
+    Object value = o.get(key);
+    return value == null ? null : String.valueOf(value);
+  }
+
+  // And goes out as a number again, as RecordPayloadCodec writes it.
+  protected static Object numberOrString(String value) {
+    if (value != null) {
+      try {
+        Long number = Long.valueOf(value);
+        if (number.toString().equals(value)) {
+          return number;
+        }
+      } catch (NumberFormatException e) {
+        // Not a number; keep the string.
+      }
+    }
+    return value;
+  }
+
+  protected static BookmarkRecord treeDecodeBookmark(String json) {
+    JSONObject o = (JSONObject) JSONValue.parse(json);
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = treeString(o, "id");
+    record.type = treeString(o, "type");
+    record.title = treeString(o, "title");
+    record.bookmarkURI = treeString(o, "bmkUri");
+    record.description = treeString(o, "description");
+    Boolean sidebar = (Boolean) o.get("loadInSidebar");
+    record.loadInSidebar = sidebar != null && sidebar.booleanValue();
+    record.tags = treeArray(o, "tags");
+    record.keyword = treeString(o, "keyword");
+    record.parentID = treeString(o, "parentid");
+    record.parentName = treeString(o, "parentName");
+    record.queryID = treeString(o, "queryId");
+    record.children = treeArray(o, "children");
+    record.siteURI = treeString(o, "siteUri");
+    record.feedURI = treeString(o, "feedUri");
+    record.pos = treeNumberOrString(o, "pos");
+    return record;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static String treeEncodeBookmark(BookmarkRecord record) {
+    JSONObject o = new JSONObject();
+    o.put("id", record.guid);
+    o.put("type", record.type);
+    o.put("title", record.title);
+    o.put("bmkUri", record.bookmarkURI);
+    o.put("description", record.description);
+    o.put("loadInSidebar", record.loadInSidebar);
+    o.put("tags", record.tags == null ? null : JSONValue.parse(record.tags));
+    o.put("keyword", record.keyword);
+    o.put("parentid", record.parentID);
+    o.put("parentName", record.parentName);
+    o.put("queryId", record.queryID);
+    o.put("children", record.children == null ? null : JSONValue.parse(record.children));
+    o.put("siteUri", record.siteURI);
+    o.put("feedUri", record.feedURI);
+    o.put("pos", numberOrString(record.pos));
+    return o.toJSONString();
+  }
+
+  protected static HistoryRecord treeDecodeHistory(String json) {
+    JSONObject o = (JSONObject) JSONValue.parse(json);
+    HistoryRecord record = new HistoryRecord();
+    record.guid = treeString(o, "id");
+    record.title = treeString(o, "title");
+    record.histURI = treeString(o, "histUri");
+    record.visits = treeArray(o, "visits");
+    return record;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected static String treeEncodeHistory(HistoryRecord record) {
+    JSONObject o = new JSONObject();
+    o.put("id", record.guid);
+    o.put("title", record.title);
+    o.put("histUri", record.histURI);
+    o.put("visits", record.visits == null ? null : JSONValue.parse(record.visits));
+    return o.toJSONString();
+  }
+
+  protected static void measure(BenchmarkRunner runner, String name, SimpleOperation op) {
+    runner.measure(name, op);
+    runner.measureAllocation(name + " per record", op, RECORDS);
+  }
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner();
+    final BookmarkRecord[] bookmarks = new BookmarkGenerator(RepositorySessionBenchmark.SEED).generate(RECORDS);
+    final HistoryRecord[] history = new HistoryGenerator(RepositorySessionBenchmark.SEED).generate(RECORDS);
+    final List<String> bookmarkPayloads = new ArrayList<String>(RECORDS);
+    final List<String> historyPayloads = new ArrayList<String>(RECORDS);
+    for (int i = 0; i < RECORDS; i++) {
+      bookmarkPayloads.add(RecordPayloadCodec.encodeBookmark(bookmarks[i]));
+      historyPayloads.add(RecordPayloadCodec.encodeHistory(history[i]));
+    }
+
+    measure(runner, "bookmark decode, tree", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (String json : bookmarkPayloads) {
+          treeDecodeBookmark(json);
+        }
+      }
+    });
+    measure(runner, "bookmark decode, streaming", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (String json : bookmarkPayloads) {
+          RecordPayloadCodec.decodeBookmark(json);
+        }
+      }
+    });
+    measure(runner, "bookmark encode, tree", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (BookmarkRecord record : bookmarks) {
+          treeEncodeBookmark(record);
+        }
+      }
+    });
+    measure(runner, "bookmark encode, streaming", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (BookmarkRecord record : bookmarks) {
+          RecordPayloadCodec.encodeBookmark(record);
+        }
+      }
+    });
+
+    measure(runner, "history decode, tree", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (String json : historyPayloads) {
+          treeDecodeHistory(json);
+        }
+      }
+    });
+    measure(runner, "history decode, streaming", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (String json : historyPayloads) {
+          RecordPayloadCodec.decodeHistory(json);
+        }
+      }
+    });
+    measure(runner, "history encode, tree", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (HistoryRecord record : history) {
+          treeEncodeHistory(record);
+        }
+      }
+    });
+    measure(runner, "history encode, streaming", new SimpleOperation() {
+      @Override
+      public void run() {
+        for (HistoryRecord record : history) {
+          RecordPayloadCodec.encodeHistory(record);
+        }
+      }
+    });
+  }
+}
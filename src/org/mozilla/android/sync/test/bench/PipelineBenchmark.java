@@ -0,0 +1,80 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.CompletionHandle;
+import org.mozilla.android.sync.test.helpers.ExpectStoredDelegate;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository;
+import org.mozilla.android.sync.test.helpers.InMemoryRepositorySession;
+import org.mozilla.android.sync.test.helpers.SessionPipeline;
+import org.mozilla.android.sync.test.helpers.WaitHelper;
+
+/**
+ * 1000 stores against a session whose operations each take LATENCY_MILLIS to
+ * complete: waiting for every store before issuing the next, versus keeping
+ * up to 100 in flight through a {@link SessionPipeline}.
+ */
+public class PipelineBenchmark {
+  public static final int RECORDS = 1000;
+  public static final long LATENCY_MILLIS = 1;
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner(1, 5, System.out);
+    final Record[] records = new BookmarkGenerator(RepositorySessionBenchmark.SEED).generate(RECORDS);
+    final InMemoryRepository repository = new InMemoryRepository();
+    final InMemoryRepositorySession session = (InMemoryRepositorySession) RepositorySessionBenchmark.createSession(repository);
+
+    final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(4);
+    session.setExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        timer.schedule(command, LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+      }
+    });
+
+    runner.measure("store then wait x" + RECORDS, new Operation() {
+      @Override
+      public void setUp() {
+        repository.clear();
+      }
+
+      @Override
+      public void run() {
+        for (Record record : records) {
+          ExpectStoredDelegate delegate = new ExpectStoredDelegate(record.guid);
+          CompletionHandle handle = new CompletionHandle("store " + record.guid);
+          delegate.setWaitHelper(handle);
+          session.store(record, delegate);
+          handle.await(WaitHelper.DEFAULT_TIMEOUT);
+        }
+      }
+    });
+
+    runner.measure("pipelined x" + RECORDS, new Operation() {
+      @Override
+      public void setUp() {
+        repository.clear();
+      }
+
+      @Override
+      public void run() {
+        SessionPipeline pipeline = new SessionPipeline(session);
+        for (Record record : records) {
+          pipeline.store(record, new ExpectStoredDelegate(record.guid));
+        }
+        pipeline.drain(WaitHelper.DEFAULT_TIMEOUT);
+        pipeline.close();
+      }
+    });
+
+    timer.shutdown();
+  }
+}
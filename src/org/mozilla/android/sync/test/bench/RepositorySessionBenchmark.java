@@ -0,0 +1,298 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.ArrayList;
+
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionCreationDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionFetchRecordsDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionGuidsSinceDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionStoreDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionWipeDelegate;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.SimpleOperation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository;
+import org.mozilla.android.sync.test.helpers.InMemoryRepositorySession;
+import org.mozilla.android.sync.test.helpers.RecordStream;
+
+/**
+ * Throughput and latency numbers for the RepositorySession contract, run
+ * against {@link InMemoryRepository} so that it works on a plain JVM:
+ *
+ *   java -cp ... org.mozilla.android.sync.test.bench.RepositorySessionBenchmark [sizes...]
+ *
+ * The numbers measure the cost of driving the session API itself; device
+ * numbers for the SQLite-backed repositories need an instrumentation run.
+ */
+public class RepositorySessionBenchmark {
+  public static final int[] DEFAULT_SIZES = new int[] { 1000, 10000, 100000 };
+  public static final int FETCH_GUID_COUNT = 100;
+  public static final int STREAM_BATCH = 256;
+  public static final int RECENT_COUNT = 100;
+  public static final long BASE_TIMESTAMP = 1000000000L;
+  public static final long SEED = 20111101L;
+
+  protected final BenchmarkRunner runner;
+
+  public RepositorySessionBenchmark(BenchmarkRunner runner) {
+    this.runner = runner;
+  }
+
+  /*
+   * Delegates that just count, so we measure the session and not assertions.
+   */
+  public static class CountingFetchDelegate implements RepositorySessionFetchRecordsDelegate {
+    public int count = 0;
+
+    @Override
+    public void onFetchFailed(Exception ex, Record record) {
+      throw new IllegalStateException("Fetch failed.", ex);
+    }
+
+    @Override
+    public void onFetchSucceeded(Record[] records) {
+      count += records.length;
+    }
+
+    @Override
+    public void onFetchedRecord(Record record) {
+      count++;
+    }
+
+    @Override
+    public void onFetchCompleted() {
+    }
+  }
+
+  public static class CountingGuidsSinceDelegate implements RepositorySessionGuidsSinceDelegate {
+    public int count = 0;
+
+    @Override
+    public void onGuidsSinceFailed(Exception ex) {
+      throw new IllegalStateException("guidsSince failed.", ex);
+    }
+
+    @Override
+    public void onGuidsSinceSucceeded(String[] guids) {
+      count += guids.length;
+    }
+  }
+
+  public static class CountingStoreDelegate implements RepositorySessionStoreDelegate {
+    public int count = 0;
+
+    @Override
+    public void onStoreFailed(Exception ex) {
+      throw new IllegalStateException("Store failed.", ex);
+    }
+
+    @Override
+    public void onStoreSucceeded(Record record) {
+      count++;
+    }
+  }
+
+  public static class CountingWipeDelegate implements RepositorySessionWipeDelegate {
+    public int count = 0;
+
+    @Override
+    public void onWipeFailed(Exception ex) {
+      throw new IllegalStateException("Wipe failed.", ex);
+    }
+
+    @Override
+    public void onWipeSucceeded() {
+      count++;
+    }
+  }
+
+  public static RepositorySession createSession(InMemoryRepository repository) {
+    final RepositorySession[] holder = new RepositorySession[1];
+    repository.createSession(new RepositorySessionCreationDelegate() {
+      @Override
+      public void onSessionCreated(RepositorySession session) {
+        holder[0] = session;
+      }
+
+      @Override
+      public void onSessionCreateFailed(Exception ex) {
+        throw new IllegalStateException("Session creation failed.", ex);
+      }
+    }, null);
+    return holder[0];
+  }
+
+  protected Record[] createRecords(int size) {
+    BookmarkRecord[] records = new BookmarkGenerator(SEED).generate(size);
+    // Spread timestamps evenly so that "since midpoint" selects exactly half.
+    for (int i = 0; i < size; i++) {
+      records[i].lastModified = BASE_TIMESTAMP + i;
+    }
+    return records;
+  }
+
+  protected static void populate(InMemoryRepository repository, Record[] records) {
+    for (Record record : records) {
+      repository.put(record.guid, record);
+    }
+    // Nobody consumes the change journal here; don't let it grow across iterations.
+    repository.truncateJournal(repository.currentSequence());
+  }
+
+  public void run(final int size) {
+    final Record[] records = createRecords(size);
+    final InMemoryRepository repository = new InMemoryRepository();
+    populate(repository, records);
+    final RepositorySession session = createSession(repository);
+    final long midpoint = BASE_TIMESTAMP + size / 2;
+
+    final String[] guids = new String[Math.min(FETCH_GUID_COUNT, size)];
+    for (int i = 0; i < guids.length; i++) {
+      guids[i] = records[(i * (size / guids.length))].guid;
+    }
+
+    runner.measure("fetchAll/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        session.fetchAll(new CountingFetchDelegate());
+      }
+    });
+
+    runner.measure("streamSince(0, by " + STREAM_BATCH + ")/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        RecordStream stream = ((InMemoryRepositorySession) session).streamSince(0, new CountingFetchDelegate());
+        int delivered;
+        do {
+          delivered = stream.request(STREAM_BATCH);
+        } while (delivered == STREAM_BATCH);
+        stream.close();
+      }
+    });
+
+    runner.measure("fetchSince(half)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        session.fetchSince(midpoint, new CountingFetchDelegate());
+      }
+    });
+
+    runner.measure("guidsSince(half)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        session.guidsSince(midpoint, new CountingGuidsSinceDelegate());
+      }
+    });
+
+    // An incremental sync: only the newest few records changed. With an index on
+    // lastModified this should stay flat as size grows; a scan grows linearly.
+    final long recent = BASE_TIMESTAMP + size - RECENT_COUNT;
+    runner.measure("guidsSince(last " + RECENT_COUNT + ", index)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        session.guidsSince(recent, new CountingGuidsSinceDelegate());
+      }
+    });
+
+    runner.measure("guidsSince(last " + RECENT_COUNT + ", scan)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        ArrayList<String> result = new ArrayList<String>();
+        for (Record record : records) {
+          if (record.lastModified >= recent) {
+            result.add(record.guid);
+          }
+        }
+        new CountingGuidsSinceDelegate().onGuidsSinceSucceeded(result.toArray(new String[result.size()]));
+      }
+    });
+
+    final long sequence = repository.currentSequence();
+    for (int i = 0; i < Math.min(RECENT_COUNT, size); i++) {
+      repository.put(records[i].guid, records[i]);
+    }
+    runner.measure("guidsChangedSince(last " + RECENT_COUNT + ", journal)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        ((InMemoryRepositorySession) session).guidsChangedSince(sequence, new CountingGuidsSinceDelegate());
+      }
+    });
+
+    runner.measure("fetch(" + guids.length + " guids)/" + size, new SimpleOperation() {
+      @Override
+      public void run() {
+        session.fetch(guids, new CountingFetchDelegate());
+      }
+    });
+
+    runner.measure("store(replace)/" + size, new SimpleOperation() {
+      int next = 0;
+      @Override
+      public void run() {
+        Record record = records[next++ % records.length];
+        record.lastModified++;
+        session.store(record, new CountingStoreDelegate());
+      }
+    });
+
+    runner.measure("store(each, " + size + ")/" + size, new Operation() {
+      @Override
+      public void setUp() {
+        repository.clear();
+        repository.truncateJournal(repository.currentSequence());
+      }
+
+      @Override
+      public void run() {
+        CountingStoreDelegate delegate = new CountingStoreDelegate();
+        for (Record record : records) {
+          session.store(record, delegate);
+        }
+      }
+    });
+
+    runner.measure("storeBatch(" + size + ")/" + size, new Operation() {
+      @Override
+      public void setUp() {
+        repository.clear();
+        repository.truncateJournal(repository.currentSequence());
+      }
+
+      @Override
+      public void run() {
+        ((InMemoryRepositorySession) session).storeBatch(records, new CountingStoreDelegate());
+      }
+    });
+
+    runner.measure("wipe/" + size, new Operation() {
+      @Override
+      public void setUp() {
+        populate(repository, records);
+      }
+
+      @Override
+      public void run() {
+        session.wipe(new CountingWipeDelegate());
+      }
+    });
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = DEFAULT_SIZES;
+    if (args.length > 0) {
+      sizes = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sizes[i] = Integer.parseInt(args[i]);
+      }
+    }
+    RepositorySessionBenchmark benchmark = new RepositorySessionBenchmark(new BenchmarkRunner());
+    for (int size : sizes) {
+      benchmark.run(size);
+    }
+  }
+}
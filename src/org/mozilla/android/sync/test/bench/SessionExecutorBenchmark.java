@@ -0,0 +1,95 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionStoreDelegate;
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository;
+import org.mozilla.android.sync.test.helpers.InMemoryRepositorySession;
+import org.mozilla.android.sync.test.helpers.MeteredExecutor;
+
+/**
+ * 10k individual stores, each completing on another thread: a new thread per
+ * operation, as the Android sessions do today, versus a shared
+ * {@link MeteredExecutor}. Prints the executor's metrics afterwards.
+ */
+public class SessionExecutorBenchmark {
+  public static final int RECORDS = 10000;
+
+  public static class LatchStoreDelegate implements RepositorySessionStoreDelegate {
+    public final CountDownLatch latch;
+
+    public LatchStoreDelegate(int count) {
+      latch = new CountDownLatch(count);
+    }
+
+    @Override
+    public void onStoreFailed(Exception ex) {
+      throw new IllegalStateException("Store failed.", ex);
+    }
+
+    @Override
+    public void onStoreSucceeded(Record record) {
+      latch.countDown();
+    }
+
+    public void await() {
+      try {
+        if (!latch.await(60, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Timed out waiting for stores.");
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  protected static Operation storeAll(final InMemoryRepository repository,
+                                      final InMemoryRepositorySession session,
+                                      final Record[] records) {
+    return new Operation() {
+      @Override
+      public void setUp() {
+        repository.clear();
+        repository.truncateJournal(repository.currentSequence());
+      }
+
+      @Override
+      public void run() {
+        LatchStoreDelegate delegate = new LatchStoreDelegate(records.length);
+        for (Record record : records) {
+          session.store(record, delegate);
+        }
+        delegate.await();
+      }
+    };
+  }
+
+  public static void main(String[] args) {
+    BenchmarkRunner runner = new BenchmarkRunner(3, 10, System.out);
+    Record[] records = new BookmarkGenerator(RepositorySessionBenchmark.SEED).generate(RECORDS);
+    InMemoryRepository repository = new InMemoryRepository();
+    InMemoryRepositorySession session = (InMemoryRepositorySession) RepositorySessionBenchmark.createSession(repository);
+
+    session.setExecutor(new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        new Thread(command).start();
+      }
+    });
+    runner.measure("store x" + RECORDS + ", thread per operation", storeAll(repository, session, records));
+
+    MeteredExecutor executor = new MeteredExecutor();
+    session.setExecutor(executor);
+    runner.measure("store x" + RECORDS + ", shared executor", storeAll(repository, session, records));
+    System.out.println("  " + executor);
+    executor.shutdown();
+  }
+}
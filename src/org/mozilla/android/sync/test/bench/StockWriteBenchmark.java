@@ -0,0 +1,101 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import org.mozilla.android.sync.MainActivity;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.android.DBUtils;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.StockBookmarkWriter;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.provider.Browser;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.suitebuilder.annotation.LargeTest;
+
+/**
+ * Writing 1000 bookmarks into the stock browser and recording their android
+ * IDs in the mirror: one ContentResolver.insert per bookmark, versus
+ * {@link StockBookmarkWriter} batches of 100.
+ */
+@LargeTest
+public class StockWriteBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+  public static final int ROWS = 1000;
+
+  protected BenchmarkRunner runner = new BenchmarkRunner(1, 3, System.out);
+  protected AndroidBrowserBookmarksDatabaseHelper helper;
+  protected ContentResolver resolver;
+  protected BookmarkRecord[] records;
+
+  public StockWriteBenchmark() {
+    super(MainActivity.class);
+  }
+
+  public Context getApplicationContext() {
+    return this.getInstrumentation().getTargetContext().getApplicationContext();
+  }
+
+  @Override
+  public void setUp() {
+    helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    resolver = getApplicationContext().getContentResolver();
+    records = new BookmarkRecord[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      records[i] = new BookmarkRecord();
+      records[i].guid = "stockbench" + i;
+      records[i].title = "Stock " + i;
+      records[i].bookmarkURI = "http://stock.example.com/" + i;
+      records[i].type = DBUtils.BOOKMARK_TYPE;
+    }
+  }
+
+  @Override
+  public void tearDown() {
+    helper.wipe();
+    helper.close();
+    resolver.delete(Browser.BOOKMARKS_URI, null, null);
+  }
+
+  protected abstract class StockWrite implements Operation {
+    @Override
+    public void setUp() {
+      helper.wipe();
+      resolver.delete(Browser.BOOKMARKS_URI, null, null);
+      for (BookmarkRecord record : records) {
+        helper.insert(record);
+      }
+    }
+  }
+
+  public void testStockWrites() {
+    runner.measure("ContentResolver.insert x" + ROWS, new StockWrite() {
+      @Override
+      public void run() {
+        for (BookmarkRecord record : records) {
+          ContentValues cv = new ContentValues();
+          cv.put(Browser.BookmarkColumns.BOOKMARK, 1);
+          cv.put(Browser.BookmarkColumns.TITLE, record.title);
+          cv.put(Browser.BookmarkColumns.URL, record.bookmarkURI);
+          Uri uri = resolver.insert(Browser.BOOKMARKS_URI, cv);
+          helper.updateAndroidId(record.guid, DBUtils.getAndroidIdFromUri(uri));
+        }
+      }
+    });
+
+    runner.measure("StockBookmarkWriter x" + ROWS, new StockWrite() {
+      @Override
+      public void run() {
+        StockBookmarkWriter writer = new StockBookmarkWriter(resolver, helper);
+        for (BookmarkRecord record : records) {
+          writer.insert(record);
+        }
+        writer.flush();
+      }
+    });
+  }
+}
@@ -0,0 +1,179 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.bench;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.mozilla.android.sync.MainActivity;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.test.bench.BenchmarkRunner.Operation;
+import org.mozilla.android.sync.test.helpers.BookmarkGenerator;
+import org.mozilla.android.sync.test.helpers.CompletionHandle;
+import org.mozilla.android.sync.test.helpers.FastWipe;
+import org.mozilla.android.sync.test.helpers.WaitHelper;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.ActivityInstrumentationTestCase2;
+import android.test.suitebuilder.annotation.LargeTest;
+
+/**
+ * Wiping 10k bookmark rows.
+ *
+ * The helper case measures AndroidBrowserBookmarksDatabaseHelper.wipe() as it
+ * is. The scratch cases empty an in-memory table with a row-qualified DELETE
+ * (which defeats SQLite's truncate optimization), with {@link FastWipe}'s
+ * truncate and recreate, and with wipeInBackground, timing only the part the
+ * caller waits for.
+ */
+@LargeTest
+public class WipeBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+  public static final int ROWS = 10000;
+  public static final long SEED = 16016;
+
+  private static final String SCRATCH_TABLE = "scratch";
+  private static final String SCRATCH_SCHEMA =
+      "CREATE TABLE " + SCRATCH_TABLE + " (" +
+      "id INTEGER PRIMARY KEY AUTOINCREMENT, guid TEXT, title TEXT, " +
+      "bmkUri TEXT, parentID TEXT, type TEXT, modified INTEGER, deleted INTEGER DEFAULT 0)";
+
+  protected BenchmarkRunner runner = new BenchmarkRunner(1, 5, System.out);
+  protected BookmarkRecord[] records;
+
+  public WipeBenchmark() {
+    super(MainActivity.class);
+  }
+
+  public Context getApplicationContext() {
+    return this.getInstrumentation().getTargetContext().getApplicationContext();
+  }
+
+  @Override
+  public void setUp() {
+    records = new BookmarkGenerator(SEED).generate(ROWS);
+  }
+
+  public void testHelperWipe() {
+    final AndroidBrowserBookmarksDatabaseHelper helper = new AndroidBrowserBookmarksDatabaseHelper(getApplicationContext());
+    try {
+      runner.measure("helper wipe x" + ROWS, new Operation() {
+        @Override
+        public void setUp() {
+          helper.wipe();
+          for (BookmarkRecord record : records) {
+            helper.insert(record);
+          }
+        }
+
+        @Override
+        public void run() {
+          helper.wipe();
+        }
+      });
+    } finally {
+      helper.close();
+    }
+  }
+
+  protected void populate(SQLiteDatabase db) {
+    SQLiteStatement insert = db.compileStatement(
+        "INSERT INTO " + SCRATCH_TABLE + " (guid, title, bmkUri, parentID, type, modified) " +
+        "VALUES (?, ?, ?, ?, ?, ?)");
+    db.beginTransaction();
+    try {
+      for (BookmarkRecord record : records) {
+        insert.clearBindings();
+        DatabaseHelperWriteBenchmark.bindNullable(insert, 1, record.guid);
+        DatabaseHelperWriteBenchmark.bindNullable(insert, 2, record.title);
+        DatabaseHelperWriteBenchmark.bindNullable(insert, 3, record.bookmarkURI);
+        DatabaseHelperWriteBenchmark.bindNullable(insert, 4, record.parentID);
+        DatabaseHelperWriteBenchmark.bindNullable(insert, 5, record.type);
+        insert.bindLong(6, record.lastModified);
+        insert.executeInsert();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+      insert.close();
+    }
+  }
+
+  protected abstract class ScratchWipe implements Operation {
+    protected final SQLiteDatabase db;
+
+    public ScratchWipe(SQLiteDatabase db) {
+      this.db = db;
+    }
+
+    @Override
+    public void setUp() {
+      FastWipe.recreate(db, SCRATCH_TABLE, SCRATCH_SCHEMA);
+      populate(db);
+    }
+  }
+
+  protected int count(SQLiteDatabase db) {
+    Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + SCRATCH_TABLE, null);
+    try {
+      cursor.moveToFirst();
+      return cursor.getInt(0);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  public void testScratchWipes() {
+    final SQLiteDatabase db = SQLiteDatabase.create(null);
+    final ExecutorService background = Executors.newSingleThreadExecutor();
+    try {
+      db.execSQL(SCRATCH_SCHEMA);
+
+      runner.measure("scratch DELETE WHERE 1 x" + ROWS, new ScratchWipe(db) {
+        @Override
+        public void run() {
+          db.delete(SCRATCH_TABLE, "1", null);
+        }
+      });
+
+      runner.measure("scratch truncate x" + ROWS, new ScratchWipe(db) {
+        @Override
+        public void run() {
+          FastWipe.truncate(db, SCRATCH_TABLE);
+        }
+      });
+
+      runner.measure("scratch recreate x" + ROWS, new ScratchWipe(db) {
+        @Override
+        public void run() {
+          FastWipe.recreate(db, SCRATCH_TABLE, SCRATCH_SCHEMA);
+        }
+      });
+
+      final CompletionHandle[] last = new CompletionHandle[1];
+      runner.measure("scratch wipeInBackground x" + ROWS, new ScratchWipe(db) {
+        @Override
+        public void setUp() {
+          if (last[0] != null) {
+            last[0].await(WaitHelper.DEFAULT_TIMEOUT);
+          }
+          super.setUp();
+        }
+
+        @Override
+        public void run() {
+          last[0] = FastWipe.wipeInBackground(db, SCRATCH_TABLE, SCRATCH_SCHEMA, background);
+        }
+      });
+      assertEquals(0, count(db));
+      last[0].await(WaitHelper.DEFAULT_TIMEOUT);
+    } finally {
+      background.shutdown();
+      db.close();
+    }
+  }
+}
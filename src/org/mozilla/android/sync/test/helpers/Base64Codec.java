@@ -0,0 +1,103 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.Arrays;
+
+/**
+ * Standard (RFC 4648, padded) Base64, usable on both a device and a plain
+ * JVM, where android.util.Base64 isn't available.
+ */
+public class Base64Codec {
+  private static final char[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private static final int[] DECODE = new int[128];
+  static {
+    Arrays.fill(DECODE, -1);
+    for (int i = 0; i < ALPHABET.length; i++) {
+      DECODE[ALPHABET[i]] = i;
+    }
+  }
+
+  public static String encode(byte[] in) {
+    char[] out = new char[((in.length + 2) / 3) * 4];
+    int o = 0;
+    for (int i = 0; i < in.length; i += 3) {
+      int b = (in[i] & 0xff) << 16;
+      if (i + 1 < in.length) {
+        b |= (in[i + 1] & 0xff) << 8;
+      }
+      if (i + 2 < in.length) {
+        b |= in[i + 2] & 0xff;
+      }
+      out[o++] = ALPHABET[(b >> 18) & 0x3f];
+      out[o++] = ALPHABET[(b >> 12) & 0x3f];
+      out[o++] = i + 1 < in.length ? ALPHABET[(b >> 6) & 0x3f] : '=';
+      out[o++] = i + 2 < in.length ? ALPHABET[b & 0x3f] : '=';
+    }
+    return new String(out);
+  }
+
+  /**
+   * Number of bytes the Base64 text in s[start, end) decodes to.
+   */
+  public static int decodedLength(CharSequence s, int start, int end) {
+    int length = end - start;
+    if (length % 4 != 0) {
+      throw new IllegalArgumentException("Base64 length not a multiple of 4: " + length);
+    }
+    int padding = 0;
+    if (length > 0 && s.charAt(end - 1) == '=') {
+      padding++;
+      if (s.charAt(end - 2) == '=') {
+        padding++;
+      }
+    }
+    return (length / 4) * 3 - padding;
+  }
+
+  private static int value(char c) {
+    int v = c < 128 ? DECODE[c] : -1;
+    if (v < 0) {
+      throw new IllegalArgumentException("Not a Base64 character: " + c);
+    }
+    return v;
+  }
+
+  /**
+   * Decode the Base64 text in s[start, end) into out at offset.
+   *
+   * @return the number of bytes written.
+   */
+  public static int decode(CharSequence s, int start, int end, byte[] out, int offset) {
+    int length = decodedLength(s, start, end);
+    int o = offset;
+    int limit = offset + length;
+    for (int i = start; i < end; i += 4) {
+      int b = value(s.charAt(i)) << 18 | value(s.charAt(i + 1)) << 12;
+      char c2 = s.charAt(i + 2);
+      char c3 = s.charAt(i + 3);
+      if (c2 != '=') {
+        b |= value(c2) << 6;
+      }
+      if (c3 != '=') {
+        b |= value(c3);
+      }
+      out[o++] = (byte) (b >> 16);
+      if (o < limit) {
+        out[o++] = (byte) (b >> 8);
+      }
+      if (o < limit) {
+        out[o++] = (byte) b;
+      }
+    }
+    return length;
+  }
+
+  public static byte[] decode(String s) {
+    byte[] out = new byte[decodedLength(s, 0, s.length())];
+    decode(s, 0, s.length(), out, 0);
+    return out;
+  }
+}
@@ -0,0 +1,213 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+import android.database.Cursor;
+import android.provider.Browser;
+
+/**
+ * Decodes bookmark rows by column index. Column names are looked up once,
+ * when the decoder is created for a cursor, instead of once per field per
+ * row as DBUtils.getStringFromCursor does.
+ *
+ * For the mirror, decode fills every field DBUtils.bookmarkFromMirrorCursor
+ * does. Columns the cursor doesn't have are skipped.
+ */
+public class BookmarkCursorDecoder {
+  // Positions in the column name arrays passed to the constructor.
+  private static final int GUID            = 0;
+  private static final int LAST_MODIFIED   = 1;
+  private static final int ANDROID_ID      = 2;
+  private static final int DELETED         = 3;
+  private static final int TITLE           = 4;
+  private static final int URI             = 5;
+  private static final int DESCRIPTION     = 6;
+  private static final int LOAD_IN_SIDEBAR = 7;
+  private static final int TAGS            = 8;
+  private static final int KEYWORD         = 9;
+  private static final int PARENT_ID       = 10;
+  private static final int PARENT_NAME     = 11;
+  private static final int TYPE            = 12;
+  private static final int GENERATOR_URI   = 13;
+  private static final int STATIC_TITLE    = 14;
+  private static final int FOLDER_NAME     = 15;
+  private static final int QUERY_ID        = 16;
+  private static final int SITE_URI        = 17;
+  private static final int FEED_URI        = 18;
+  private static final int POS             = 19;
+  private static final int CHILDREN        = 20;
+  private static final int COLUMN_COUNT    = 21;
+
+  private static final String[] MIRROR_COLUMNS = new String[] {
+    AndroidBrowserBookmarksDatabaseHelper.COL_GUID,
+    AndroidBrowserBookmarksDatabaseHelper.COL_LAST_MOD,
+    AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID,
+    AndroidBrowserBookmarksDatabaseHelper.COL_DELETED,
+    AndroidBrowserBookmarksDatabaseHelper.COL_TITLE,
+    AndroidBrowserBookmarksDatabaseHelper.COL_BMK_URI,
+    AndroidBrowserBookmarksDatabaseHelper.COL_DESCRIP,
+    AndroidBrowserBookmarksDatabaseHelper.COL_LOAD_IN_SIDEBAR,
+    AndroidBrowserBookmarksDatabaseHelper.COL_TAGS,
+    AndroidBrowserBookmarksDatabaseHelper.COL_KEYWORD,
+    AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_ID,
+    AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_NAME,
+    AndroidBrowserBookmarksDatabaseHelper.COL_TYPE,
+    AndroidBrowserBookmarksDatabaseHelper.COL_GENERATOR_URI,
+    AndroidBrowserBookmarksDatabaseHelper.COL_STATIC_TITLE,
+    AndroidBrowserBookmarksDatabaseHelper.COL_FOLDER_NAME,
+    AndroidBrowserBookmarksDatabaseHelper.COL_QUERY_ID,
+    AndroidBrowserBookmarksDatabaseHelper.COL_SITE_URI,
+    AndroidBrowserBookmarksDatabaseHelper.COL_FEED_URI,
+    AndroidBrowserBookmarksDatabaseHelper.COL_POS,
+    AndroidBrowserBookmarksDatabaseHelper.COL_CHILDREN
+  };
+
+  private static final String[] STOCK_COLUMNS = new String[COLUMN_COUNT];
+  static {
+    STOCK_COLUMNS[ANDROID_ID] = Browser.BookmarkColumns._ID;
+    STOCK_COLUMNS[TITLE] = Browser.BookmarkColumns.TITLE;
+    STOCK_COLUMNS[URI] = Browser.BookmarkColumns.URL;
+  }
+
+  public final int guid;
+  public final int lastModified;
+  public final int androidID;
+  public final int deleted;
+  public final int title;
+  public final int uri;
+  public final int description;
+  public final int loadInSidebar;
+  public final int tags;
+  public final int keyword;
+  public final int parentID;
+  public final int parentName;
+  public final int type;
+  public final int generatorURI;
+  public final int staticTitle;
+  public final int folderName;
+  public final int queryID;
+  public final int siteURI;
+  public final int feedURI;
+  public final int pos;
+  public final int children;
+
+  protected BookmarkCursorDecoder(Cursor cursor, String[] columns) {
+    guid          = indexOf(cursor, columns[GUID]);
+    lastModified  = indexOf(cursor, columns[LAST_MODIFIED]);
+    androidID     = indexOf(cursor, columns[ANDROID_ID]);
+    deleted       = indexOf(cursor, columns[DELETED]);
+    title         = indexOf(cursor, columns[TITLE]);
+    uri           = indexOf(cursor, columns[URI]);
+    description   = indexOf(cursor, columns[DESCRIPTION]);
+    loadInSidebar = indexOf(cursor, columns[LOAD_IN_SIDEBAR]);
+    tags          = indexOf(cursor, columns[TAGS]);
+    keyword       = indexOf(cursor, columns[KEYWORD]);
+    parentID      = indexOf(cursor, columns[PARENT_ID]);
+    parentName    = indexOf(cursor, columns[PARENT_NAME]);
+    type          = indexOf(cursor, columns[TYPE]);
+    generatorURI  = indexOf(cursor, columns[GENERATOR_URI]);
+    staticTitle   = indexOf(cursor, columns[STATIC_TITLE]);
+    folderName    = indexOf(cursor, columns[FOLDER_NAME]);
+    queryID       = indexOf(cursor, columns[QUERY_ID]);
+    siteURI       = indexOf(cursor, columns[SITE_URI]);
+    feedURI       = indexOf(cursor, columns[FEED_URI]);
+    pos           = indexOf(cursor, columns[POS]);
+    children      = indexOf(cursor, columns[CHILDREN]);
+  }
+
+  private static int indexOf(Cursor cursor, String column) {
+    return column == null ? -1 : cursor.getColumnIndex(column);
+  }
+
+  /**
+   * For cursors over Mozilla's bookmark mirror table.
+   */
+  public static BookmarkCursorDecoder forMirror(Cursor cursor) {
+    return new BookmarkCursorDecoder(cursor, MIRROR_COLUMNS);
+  }
+
+  /**
+   * For cursors over the stock browser's Browser.BOOKMARKS_URI: title, URI
+   * and _ID as the Android ID.
+   */
+  public static BookmarkCursorDecoder forStock(Cursor cursor) {
+    return new BookmarkCursorDecoder(cursor, STOCK_COLUMNS);
+  }
+
+  private static String string(Cursor cursor, int column, String absent) {
+    return column < 0 ? absent : cursor.getString(column);
+  }
+
+  public String getGUID(Cursor cursor) {
+    return string(cursor, guid, null);
+  }
+
+  public String getTitle(Cursor cursor) {
+    return string(cursor, title, null);
+  }
+
+  public String getURI(Cursor cursor) {
+    return string(cursor, uri, null);
+  }
+
+  public String getParentID(Cursor cursor) {
+    return string(cursor, parentID, null);
+  }
+
+  public String getParentName(Cursor cursor) {
+    return string(cursor, parentName, null);
+  }
+
+  public long getAndroidID(Cursor cursor) {
+    return androidID < 0 ? -1 : cursor.getLong(androidID);
+  }
+
+  public boolean isDeleted(Cursor cursor) {
+    return deleted >= 0 && cursor.getLong(deleted) == 1;
+  }
+
+  /**
+   * Fill the fields this decoder knows about from the current row. Fields
+   * whose columns the cursor doesn't have are left as they are.
+   */
+  public BookmarkRecord decode(Cursor cursor, BookmarkRecord record) {
+    record.guid          = string(cursor, guid, record.guid);
+    record.title         = string(cursor, title, record.title);
+    record.bookmarkURI   = string(cursor, uri, record.bookmarkURI);
+    record.description   = string(cursor, description, record.description);
+    record.tags          = string(cursor, tags, record.tags);
+    record.keyword       = string(cursor, keyword, record.keyword);
+    record.parentID      = string(cursor, parentID, record.parentID);
+    record.parentName    = string(cursor, parentName, record.parentName);
+    record.type          = string(cursor, type, record.type);
+    record.generatorURI  = string(cursor, generatorURI, record.generatorURI);
+    record.staticTitle   = string(cursor, staticTitle, record.staticTitle);
+    record.folderName    = string(cursor, folderName, record.folderName);
+    record.queryID       = string(cursor, queryID, record.queryID);
+    record.siteURI       = string(cursor, siteURI, record.siteURI);
+    record.feedURI       = string(cursor, feedURI, record.feedURI);
+    record.pos           = string(cursor, pos, record.pos);
+    record.children      = string(cursor, children, record.children);
+    if (lastModified >= 0) {
+      record.lastModified = cursor.getLong(lastModified);
+    }
+    if (androidID >= 0) {
+      record.androidID = cursor.getLong(androidID);
+    }
+    if (loadInSidebar >= 0) {
+      record.loadInSidebar = cursor.getLong(loadInSidebar) == 1;
+    }
+    if (deleted >= 0) {
+      record.deleted = cursor.getLong(deleted) == 1;
+    }
+    return record;
+  }
+
+  public BookmarkRecord decode(Cursor cursor) {
+    return decode(cursor, new BookmarkRecord());
+  }
+}
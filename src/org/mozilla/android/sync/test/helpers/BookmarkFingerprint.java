@@ -0,0 +1,268 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.io.UnsupportedEncodingException;
+
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.provider.Browser;
+
+/**
+ * A cheap summary of a bookmarks table. If neither the stock table's nor the
+ * mirror's fingerprint has changed since the last sync, that sync has nothing
+ * to do.
+ *
+ * count, maxID and checksum describe the linked bookmarks: every stock
+ * bookmark, and every live mirror row with an android ID. The checksum is a
+ * SUM, computed in SQLite, of one integer expression per row over android
+ * ID, title and URL; the same expression serves both sides, so a mirror in
+ * step with stock has the same count, maxID and checksum (see
+ * {@link #sameContent(BookmarkFingerprint)}). Each side is one aggregate
+ * query returning a single fixed-size row.
+ *
+ * SQLite here has no hash or UNICODE() function, so a string is hashed
+ * through its HEX() digits, read as integers in fixed windows: the first
+ * {@link #WINDOWS} windows, the last window, and the length. That covers
+ * roughly the first 80 and the last 5 UTF-8 bytes of each title and URL. A
+ * same-length edit that falls entirely between the two goes unnoticed.
+ *
+ * For the mirror, rows and maxModified also cover the rest of the table
+ * (unlinked and deleted rows), so changes waiting to go to stock show up too.
+ */
+public class BookmarkFingerprint {
+  public final long count;
+  public final long maxID;
+  public final long checksum;
+  public final long rows;
+  public final long maxModified;
+
+  public BookmarkFingerprint(long count, long maxID, long checksum, long rows, long maxModified) {
+    this.count = count;
+    this.maxID = maxID;
+    this.checksum = checksum;
+    this.rows = rows;
+    this.maxModified = maxModified;
+  }
+
+  // All arithmetic is reduced mod P, so no term or per-row value reaches
+  // 2^47 and the SUM over rows can't overflow.
+  protected static final long P = 2147483647;
+  protected static final int WINDOWS = 16;
+  protected static final int WINDOW_DIGITS = 15;
+
+  /**
+   * SQL for a string column's digits: HEX() with A-F spelled 10-15, so that
+   * CAST can read any window of it as an integer.
+   */
+  private static String digitsSQL(String column) {
+    String sql = "HEX(" + column + ")";
+    for (char c = 'A'; c <= 'F'; c++) {
+      sql = "REPLACE(" + sql + ", '" + c + "', '" + (c - 'A' + 10) + "')";
+    }
+    return sql;
+  }
+
+  private static String windowSQL(String digits, String start) {
+    return "(CAST(SUBSTR(" + digits + ", " + start + ", " + WINDOW_DIGITS + ") AS INTEGER) % " + P + ")";
+  }
+
+  private static String columnSQL(String column) {
+    String digits = digitsSQL(column);
+    StringBuilder sql = new StringBuilder("((IFNULL(LENGTH(" + column + "), -1) + 2");
+    for (int k = 0; k < WINDOWS; k++) {
+      sql.append(" + ").append(windowSQL(digits, Integer.toString(1 + k * WINDOW_DIGITS)))
+         .append(" * ").append(weight(k));
+    }
+    sql.append(" + ").append(windowSQL(digits, "-" + WINDOW_DIGITS)).append(" * ").append(weight(WINDOWS));
+    return sql.append(") % ").append(P).append(")").toString();
+  }
+
+  /**
+   * SQL for one row's contribution to the checksum. {@link #rowHash} is the
+   * same function in Java.
+   */
+  protected static String rowSQL(String id, String title, String uri) {
+    return "(((" + columnSQL(title) + " * 37 + " + columnSQL(uri) + " * 41) % " + P +
+           " * (" + id + " % 65521 + 1) + " + id + ") % " + P + ")";
+  }
+
+  // Distinct odd weights, so moving text between windows changes the sum.
+  private static long weight(int k) {
+    return 2 * k + 3;
+  }
+
+  private static String digits(String s) {
+    StringBuilder sb = new StringBuilder();
+    byte[] bytes;
+    try {
+      bytes = s.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    for (byte b : bytes) {
+      for (int nibble : new int[] { (b >> 4) & 0xf, b & 0xf }) {
+        sb.append(nibble);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static long window(String digits, int start) {
+    int end = Math.min(digits.length(), start + WINDOW_DIGITS);
+    return start >= end ? 0 : Long.parseLong(digits.substring(start, end)) % P;
+  }
+
+  private static long columnHash(String s) {
+    if (s == null) {
+      return 1;
+    }
+    String digits = digits(s);
+    long h = s.codePointCount(0, s.length()) + 2;
+    for (int k = 0; k < WINDOWS; k++) {
+      h += window(digits, k * WINDOW_DIGITS) * weight(k);
+    }
+    h += window(digits, Math.max(0, digits.length() - WINDOW_DIGITS)) * weight(WINDOWS);
+    return h % P;
+  }
+
+  /**
+   * One row's contribution to the checksum, as {@link #rowSQL} computes it.
+   */
+  public static long rowHash(long androidID, String title, String uri) {
+    long h = (columnHash(title) * 37 + columnHash(uri) * 41) % P;
+    return (h * (androidID % 65521 + 1) + androidID) % P;
+  }
+
+  private static final String STOCK_SELECTION = Browser.BookmarkColumns.BOOKMARK + " = 1";
+  private static final String[] STOCK_AGGREGATE = new String[] {
+    "COUNT(*)",
+    "MAX(" + Browser.BookmarkColumns._ID + ")",
+    "SUM(" + rowSQL(Browser.BookmarkColumns._ID, Browser.BookmarkColumns.TITLE,
+                    Browser.BookmarkColumns.URL) + ")"
+  };
+
+  public static BookmarkFingerprint ofStock(ContentResolver resolver) {
+    Cursor cursor;
+    try {
+      cursor = resolver.query(Browser.BOOKMARKS_URI, STOCK_AGGREGATE, STOCK_SELECTION, null, null);
+    } catch (IllegalArgumentException e) {
+      cursor = null;
+    } catch (SQLiteException e) {
+      cursor = null;
+    }
+    if (cursor == null) {
+      return scanStock(resolver);
+    }
+    try {
+      cursor.moveToFirst();
+      long count = cursor.getLong(0);
+      return new BookmarkFingerprint(count, cursor.getLong(1), cursor.getLong(2), count, 0);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  protected static BookmarkFingerprint scanStock(ContentResolver resolver) {
+    Cursor cursor = resolver.query(Browser.BOOKMARKS_URI,
+        new String[] { Browser.BookmarkColumns._ID, Browser.BookmarkColumns.TITLE, Browser.BookmarkColumns.URL },
+        STOCK_SELECTION, null, null);
+    try {
+      long count = 0;
+      long maxID = 0;
+      long checksum = 0;
+      for (boolean more = cursor.moveToFirst(); more; more = cursor.moveToNext()) {
+        long id = cursor.getLong(0);
+        checksum += rowHash(id, cursor.getString(1), cursor.getString(2));
+        maxID = Math.max(maxID, id);
+        count++;
+      }
+      return new BookmarkFingerprint(count, maxID, checksum, count, 0);
+    } finally {
+      cursor.close();
+    }
+  }
+
+  private static final String LINKED =
+      AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID + " > 0 AND " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_DELETED + " = 0";
+
+  private static final String MIRROR_AGGREGATE =
+      "SELECT " +
+      "SUM(CASE WHEN " + LINKED + " THEN 1 ELSE 0 END), " +
+      "MAX(CASE WHEN " + LINKED + " THEN " + AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID + " END), " +
+      "SUM(CASE WHEN " + LINKED + " THEN " +
+        rowSQL(AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID,
+               AndroidBrowserBookmarksDatabaseHelper.COL_TITLE,
+               AndroidBrowserBookmarksDatabaseHelper.COL_BMK_URI) + " ELSE 0 END), " +
+      "COUNT(*), " +
+      "MAX(" + AndroidBrowserBookmarksDatabaseHelper.COL_LAST_MOD + ") " +
+      "FROM " + AndroidBrowserBookmarksDatabaseHelper.TBL_BOOKMARKS;
+
+  public static BookmarkFingerprint ofMirror(AndroidBrowserBookmarksDatabaseHelper helper) {
+    Cursor cursor = helper.getWritableDatabase().rawQuery(MIRROR_AGGREGATE, null);
+    try {
+      cursor.moveToFirst();
+      // SUM and MAX are NULL over an empty table; getLong reads NULL as 0.
+      return new BookmarkFingerprint(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                                     cursor.getLong(3), cursor.getLong(4));
+    } finally {
+      cursor.close();
+    }
+  }
+
+  /**
+   * True if the linked bookmarks summarized by both are the same, e.g. a
+   * stock fingerprint and the mirror's after a sync.
+   */
+  public boolean sameContent(BookmarkFingerprint other) {
+    return count == other.count && maxID == other.maxID && checksum == other.checksum;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof BookmarkFingerprint)) {
+      return false;
+    }
+    BookmarkFingerprint other = (BookmarkFingerprint) o;
+    return sameContent(other) && rows == other.rows && maxModified == other.maxModified;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (count ^ maxID ^ checksum ^ (checksum >>> 32) ^ rows ^ maxModified);
+  }
+
+  @Override
+  public String toString() {
+    return "count " + count + ", max ID " + maxID + ", checksum " + checksum +
+           ", rows " + rows + ", max modified " + maxModified;
+  }
+
+  /**
+   * Remembers the fingerprints seen by the last sync.
+   */
+  public static class Tracker {
+    private BookmarkFingerprint lastStock;
+    private BookmarkFingerprint lastMirror;
+
+    /**
+     * @return true if either table changed since the previous call, or if
+     *         this is the first call. Either way, the current fingerprints
+     *         become the ones to compare against next time.
+     */
+    public synchronized boolean changed(ContentResolver resolver,
+                                        AndroidBrowserBookmarksDatabaseHelper helper) {
+      BookmarkFingerprint stock = ofStock(resolver);
+      BookmarkFingerprint mirror = ofMirror(helper);
+      boolean changed = !stock.equals(lastStock) || !mirror.equals(lastMirror);
+      lastStock = stock;
+      lastMirror = mirror;
+      return changed;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+/**
+ * Generates a realistic bookmark tree from a seed.
+ *
+ * Every record's parentID names a folder in the output, and every folder's
+ * children lists exactly the records that name it as parent, in order. All
+ * bookmark types are produced, roughly in the proportions seen in real
+ * profiles.
+ */
+public class BookmarkGenerator extends SeededGenerator {
+  public static final String[] ROOT_GUIDS  = new String[] { "menu", "toolbar", "unfiled" };
+  public static final String[] ROOT_TITLES = new String[] { "Bookmarks Menu", "Bookmarks Toolbar", "Unsorted Bookmarks" };
+  public static final int DEFAULT_MAX_DEPTH = 8;
+
+  private static final String[] HOSTS = new String[] {
+    "mozilla.org", "example.com", "news.example.net", "wiki.example.org",
+    "shop.example.com", "mail.example.net", "blog.example.org", "docs.example.com"
+  };
+  private static final String[] WORDS = new String[] {
+    "recipes", "travel", "work", "reading", "music", "news", "reference",
+    "photos", "finance", "sports", "code", "later"
+  };
+
+  private final int maxDepth;
+
+  public BookmarkGenerator(long seed, int maxDepth) {
+    super(seed);
+    this.maxDepth = maxDepth;
+  }
+
+  public BookmarkGenerator(long seed) {
+    this(seed, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * @param count total number of records to generate, including the roots.
+   */
+  public BookmarkRecord[] generate(int count) {
+    if (count < ROOT_GUIDS.length) {
+      throw new IllegalArgumentException("Need at least " + ROOT_GUIDS.length + " records for the roots.");
+    }
+    ArrayList<BookmarkRecord> records = new ArrayList<BookmarkRecord>(count);
+    ArrayList<BookmarkRecord> folders = new ArrayList<BookmarkRecord>();
+    HashMap<String, ArrayList<String>> children = new HashMap<String, ArrayList<String>>();
+    HashMap<String, Integer> depths = new HashMap<String, Integer>();
+
+    for (int i = 0; i < ROOT_GUIDS.length; i++) {
+      BookmarkRecord root = folder(ROOT_GUIDS[i], ROOT_TITLES[i], "", "");
+      records.add(root);
+      folders.add(root);
+      children.put(root.guid, new ArrayList<String>());
+      depths.put(root.guid, 0);
+    }
+
+    while (records.size() < count) {
+      // Favour the newest folder so that we get deep chains, not just a wide tree.
+      BookmarkRecord parent = random.nextInt(10) < 4 ? folders.get(folders.size() - 1)
+                                                     : folders.get(random.nextInt(folders.size()));
+      ArrayList<String> siblings = children.get(parent.guid);
+      int depth = depths.get(parent.guid);
+
+      BookmarkRecord record;
+      int roll = random.nextInt(100);
+      if (roll < 78) {
+        record = bookmark(parent);
+      } else if (roll < 88) {
+        if (depth >= maxDepth) {
+          record = bookmark(parent);
+        } else {
+          record = folder(nextGuid(), pick(WORDS) + " " + records.size(), parent.guid, parent.title);
+          folders.add(record);
+          children.put(record.guid, new ArrayList<String>());
+          depths.put(record.guid, depth + 1);
+        }
+      } else if (roll < 93) {
+        record = separator(parent, siblings.size());
+      } else if (roll < 96) {
+        record = query(parent);
+      } else if (roll < 98) {
+        record = livemark(parent);
+      } else {
+        record = microsummary(parent);
+      }
+      siblings.add(record.guid);
+      records.add(record);
+    }
+
+    for (BookmarkRecord folder : folders) {
+      folder.children = jsonStringArray(children.get(folder.guid));
+    }
+    return records.toArray(new BookmarkRecord[records.size()]);
+  }
+
+  protected BookmarkRecord base(String type, BookmarkRecord parent) {
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = nextGuid();
+    record.type = type;
+    record.parentID = parent.guid;
+    record.parentName = parent.title;
+    record.lastModified = nextTimestamp(365);
+    return record;
+  }
+
+  protected String nextURI() {
+    return "http://" + pick(HOSTS) + "/" + pick(WORDS) + "/" + random.nextInt(1000000);
+  }
+
+  protected String nextTags() {
+    ArrayList<String> tags = new ArrayList<String>();
+    int n = random.nextInt(4);
+    for (int i = 0; i < n; i++) {
+      tags.add(pick(WORDS));
+    }
+    return jsonStringArray(tags);
+  }
+
+  protected BookmarkRecord folder(String guid, String title, String parentID, String parentName) {
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = guid;
+    record.type = "folder";
+    record.title = title;
+    record.parentID = parentID;
+    record.parentName = parentName;
+    record.lastModified = nextTimestamp(365);
+    return record;
+  }
+
+  protected BookmarkRecord bookmark(BookmarkRecord parent) {
+    BookmarkRecord record = base("bookmark", parent);
+    record.bookmarkURI = nextURI();
+    record.title = pick(WORDS) + " - " + record.bookmarkURI;
+    record.description = random.nextInt(5) == 0 ? "Description for " + record.title : "";
+    record.loadInSidebar = random.nextInt(20) == 0;
+    record.tags = nextTags();
+    record.keyword = random.nextInt(10) == 0 ? pick(WORDS) + random.nextInt(100) : "";
+    return record;
+  }
+
+  protected BookmarkRecord separator(BookmarkRecord parent, int position) {
+    BookmarkRecord record = base("separator", parent);
+    record.pos = Integer.toString(position);
+    return record;
+  }
+
+  protected BookmarkRecord query(BookmarkRecord parent) {
+    BookmarkRecord record = base("query", parent);
+    record.title = "Query " + pick(WORDS);
+    record.bookmarkURI = "place:folder=" + random.nextInt(1000) + "&queryType=1";
+    record.folderName = pick(WORDS);
+    record.queryID = random.nextBoolean() ? "MostVisited" : "";
+    record.description = "";
+    record.tags = "[]";
+    record.keyword = "";
+    return record;
+  }
+
+  protected BookmarkRecord livemark(BookmarkRecord parent) {
+    BookmarkRecord record = base("livemark", parent);
+    record.siteURI = "http://" + pick(HOSTS) + "/";
+    record.feedURI = record.siteURI + "feed.rss";
+    record.title = "Livemark " + pick(WORDS);
+    record.children = "[]";
+    return record;
+  }
+
+  protected BookmarkRecord microsummary(BookmarkRecord parent) {
+    BookmarkRecord record = base("microsummary", parent);
+    record.bookmarkURI = nextURI();
+    record.generatorURI = "http://" + pick(HOSTS) + "/generator.xml";
+    record.staticTitle = "Static " + pick(WORDS);
+    record.title = "Microsummary " + pick(WORDS);
+    record.description = "";
+    record.tags = nextTags();
+    record.keyword = "";
+    return record;
+  }
+}
@@ -128,4 +128,30 @@ public class BookmarkHelpers {
     assertEquals(expected.description, actual.description);
   }
 
+  /*
+   * Every field a mirror row holds, for comparing decoders.
+   */
+  public static void verifyAllFieldsEqual(BookmarkRecord expected, BookmarkRecord actual) {
+    assertEquals(expected.guid, actual.guid);
+    assertEquals(expected.lastModified, actual.lastModified);
+    assertEquals(expected.androidID, actual.androidID);
+    assertEquals(expected.deleted, actual.deleted);
+    assertEquals(expected.title, actual.title);
+    assertEquals(expected.bookmarkURI, actual.bookmarkURI);
+    assertEquals(expected.description, actual.description);
+    assertEquals(expected.loadInSidebar, actual.loadInSidebar);
+    assertEquals(expected.tags, actual.tags);
+    assertEquals(expected.keyword, actual.keyword);
+    assertEquals(expected.parentID, actual.parentID);
+    assertEquals(expected.parentName, actual.parentName);
+    assertEquals(expected.type, actual.type);
+    assertEquals(expected.generatorURI, actual.generatorURI);
+    assertEquals(expected.staticTitle, actual.staticTitle);
+    assertEquals(expected.folderName, actual.folderName);
+    assertEquals(expected.queryID, actual.queryID);
+    assertEquals(expected.siteURI, actual.siteURI);
+    assertEquals(expected.feedURI, actual.feedURI);
+    assertEquals(expected.pos, actual.pos);
+    assertEquals(expected.children, actual.children);
+  }
 }
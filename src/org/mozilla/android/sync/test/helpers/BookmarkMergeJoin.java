@@ -0,0 +1,239 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+
+import org.mozilla.android.sync.repositories.Utils;
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.android.DBUtils;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.Browser;
+
+/**
+ * Reconciles stock browser bookmarks with the mirror in one linear pass.
+ *
+ * Both cursors must be sorted by android ID: the stock cursor by _ID (see
+ * {@link #queryStock(ContentResolver)}), the mirror cursor as returned by
+ * AndroidBrowserBookmarksDatabaseHelper.fetchAllOrderByAndroidId(). The two
+ * are walked together like a merge join, so each row is visited once, with no
+ * per-row lookups and nothing held in memory but the current pair of rows.
+ *
+ * Mirror rows without an android ID have never been linked to stock and are
+ * skipped, as are mirror rows already marked deleted. If several live mirror
+ * rows share an android ID, the first is joined and the rest are reported
+ * through onDuplicate, not as deletions.
+ *
+ * {@link Reconciler} applies the differences to the mirror.
+ */
+public class BookmarkMergeJoin {
+
+  public interface Listener {
+    /**
+     * A stock bookmark the mirror doesn't know about.
+     */
+    public void onInserted(Cursor stock);
+
+    /**
+     * A linked bookmark whose title or URL differs between stock and mirror.
+     */
+    public void onModified(Cursor stock, Cursor mirror);
+
+    /**
+     * A linked mirror bookmark that is no longer in stock.
+     */
+    public void onDeleted(Cursor mirror);
+
+    /**
+     * A mirror bookmark linked to the same android ID as the one before it.
+     */
+    public void onDuplicate(Cursor mirror);
+  }
+
+  /**
+   * Counts each kind of difference.
+   */
+  public static class Counts implements Listener {
+    public int inserted = 0;
+    public int modified = 0;
+    public int deleted = 0;
+    public int duplicates = 0;
+
+    @Override
+    public void onInserted(Cursor stock) {
+      inserted++;
+    }
+
+    @Override
+    public void onModified(Cursor stock, Cursor mirror) {
+      modified++;
+    }
+
+    @Override
+    public void onDeleted(Cursor mirror) {
+      deleted++;
+    }
+
+    @Override
+    public void onDuplicate(Cursor mirror) {
+      duplicates++;
+    }
+  }
+
+  /**
+   * Brings the mirror in line with stock: new stock bookmarks are inserted
+   * into the mobile folder, edited ones get the stock title and URL, and
+   * removed ones are marked deleted. Duplicates are left alone and collected
+   * in {@link #duplicates} for the caller to resolve.
+   *
+   * Changes are queued during the walk, so the mirror isn't written under its
+   * own open cursor, and applied by {@link #apply()}.
+   */
+  public static class Reconciler implements Listener {
+    private final AndroidBrowserBookmarksDatabaseHelper helper;
+    private BookmarkCursorDecoder stockDecoder;
+    private BookmarkCursorDecoder mirrorDecoder;
+    private final ArrayList<BookmarkRecord> inserts = new ArrayList<BookmarkRecord>();
+    private final ArrayList<BookmarkRecord> updates = new ArrayList<BookmarkRecord>();
+    private final ArrayList<String> deletions = new ArrayList<String>();
+    public final ArrayList<String> duplicates = new ArrayList<String>();
+
+    public Reconciler(AndroidBrowserBookmarksDatabaseHelper helper) {
+      this.helper = helper;
+    }
+
+    private BookmarkCursorDecoder stock(Cursor stock) {
+      if (stockDecoder == null) {
+        stockDecoder = BookmarkCursorDecoder.forStock(stock);
+      }
+      return stockDecoder;
+    }
+
+    private BookmarkCursorDecoder mirror(Cursor mirror) {
+      if (mirrorDecoder == null) {
+        mirrorDecoder = BookmarkCursorDecoder.forMirror(mirror);
+      }
+      return mirrorDecoder;
+    }
+
+    @Override
+    public void onInserted(Cursor stock) {
+      BookmarkRecord record = new BookmarkRecord();
+      record.guid = Utils.generateGuid();
+      record.androidID = stock(stock).getAndroidID(stock);
+      record.title = stock(stock).getTitle(stock);
+      record.bookmarkURI = stock(stock).getURI(stock);
+      record.parentID = DBUtils.MOBILE_PARENT_ID;
+      record.parentName = DBUtils.MOBILE_PARENT_NAME;
+      record.type = "bookmark";
+      record.lastModified = System.currentTimeMillis();
+      inserts.add(record);
+    }
+
+    @Override
+    public void onModified(Cursor stock, Cursor mirror) {
+      BookmarkRecord record = new BookmarkRecord();
+      record.guid = mirror(mirror).getGUID(mirror);
+      record.title = stock(stock).getTitle(stock);
+      record.bookmarkURI = stock(stock).getURI(stock);
+      updates.add(record);
+    }
+
+    @Override
+    public void onDeleted(Cursor mirror) {
+      deletions.add(mirror(mirror).getGUID(mirror));
+    }
+
+    @Override
+    public void onDuplicate(Cursor mirror) {
+      duplicates.add(mirror(mirror).getGUID(mirror));
+    }
+
+    /**
+     * Write the queued changes to the mirror. Call once the cursors are
+     * closed.
+     *
+     * @return the number of mirror rows changed.
+     */
+    public int apply() {
+      for (BookmarkRecord record : inserts) {
+        helper.insert(record);
+      }
+      for (BookmarkRecord record : updates) {
+        helper.updateTitleUri(record.guid, record.title, record.bookmarkURI);
+      }
+      for (String guid : deletions) {
+        helper.markDeleted(guid);
+      }
+      int changed = inserts.size() + updates.size() + deletions.size();
+      inserts.clear();
+      updates.clear();
+      deletions.clear();
+      return changed;
+    }
+  }
+
+  public static Cursor queryStock(ContentResolver resolver) {
+    return resolver.query(Browser.BOOKMARKS_URI, null,
+                          Browser.BookmarkColumns.BOOKMARK + " = 1", null,
+                          Browser.BookmarkColumns._ID);
+  }
+
+  private static boolean same(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  private static boolean nextMirror(Cursor mirror, BookmarkCursorDecoder decoder) {
+    boolean have;
+    do {
+      have = mirror.moveToNext();
+    } while (have && (decoder.getAndroidID(mirror) <= 0 || decoder.isDeleted(mirror)));
+    return have;
+  }
+
+  /**
+   * Walk both cursors from the start. Neither cursor is closed.
+   */
+  public static void run(Cursor stock, Cursor mirror, Listener listener) {
+    BookmarkCursorDecoder stockDecoder = BookmarkCursorDecoder.forStock(stock);
+    BookmarkCursorDecoder mirrorDecoder = BookmarkCursorDecoder.forMirror(mirror);
+
+    boolean haveStock = stock.moveToFirst();
+    boolean haveMirror = mirror.moveToFirst();
+    if (haveMirror && (mirrorDecoder.getAndroidID(mirror) <= 0 || mirrorDecoder.isDeleted(mirror))) {
+      haveMirror = nextMirror(mirror, mirrorDecoder);
+    }
+
+    long previousMirrorID = -1;
+    while (haveStock || haveMirror) {
+      long stockID = haveStock ? stockDecoder.getAndroidID(stock) : Long.MAX_VALUE;
+      long mirrorID = haveMirror ? mirrorDecoder.getAndroidID(mirror) : Long.MAX_VALUE;
+
+      if (haveMirror && mirrorID == previousMirrorID) {
+        listener.onDuplicate(mirror);
+        haveMirror = nextMirror(mirror, mirrorDecoder);
+        continue;
+      }
+      if (stockID < mirrorID) {
+        listener.onInserted(stock);
+        haveStock = stock.moveToNext();
+        continue;
+      }
+      if (mirrorID < stockID) {
+        listener.onDeleted(mirror);
+      } else {
+        if (!same(stockDecoder.getTitle(stock), mirrorDecoder.getTitle(mirror)) ||
+            !same(stockDecoder.getURI(stock), mirrorDecoder.getURI(mirror))) {
+          listener.onModified(stock, mirror);
+        }
+        haveStock = stock.moveToNext();
+      }
+      previousMirrorID = mirrorID;
+      haveMirror = nextMirror(mirror, mirrorDecoder);
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+
+/**
+ * A mutable view of the current bookmark row, refilled in place for each row.
+ *
+ * String columns are copied into reusable CharArrayBuffers, so walking a
+ * cursor through a view allocates nothing per row once the buffers have grown
+ * to fit. The view is only valid until the next fill; call copy() for a
+ * BookmarkRecord that can be kept.
+ *
+ * A NULL or missing column leaves its buffer with a sizeCopied of -1; see
+ * {@link #isNull(CharArrayBuffer)}.
+ */
+public class BookmarkRowView {
+  public final CharArrayBuffer guid         = new CharArrayBuffer(12);
+  public final CharArrayBuffer title        = new CharArrayBuffer(64);
+  public final CharArrayBuffer uri          = new CharArrayBuffer(128);
+  public final CharArrayBuffer description  = new CharArrayBuffer(64);
+  public final CharArrayBuffer tags         = new CharArrayBuffer(32);
+  public final CharArrayBuffer keyword      = new CharArrayBuffer(16);
+  public final CharArrayBuffer parentID     = new CharArrayBuffer(16);
+  public final CharArrayBuffer parentName   = new CharArrayBuffer(64);
+  public final CharArrayBuffer type         = new CharArrayBuffer(16);
+  public final CharArrayBuffer generatorURI = new CharArrayBuffer(64);
+  public final CharArrayBuffer staticTitle  = new CharArrayBuffer(64);
+  public final CharArrayBuffer folderName   = new CharArrayBuffer(64);
+  public final CharArrayBuffer queryID      = new CharArrayBuffer(16);
+  public final CharArrayBuffer siteURI      = new CharArrayBuffer(128);
+  public final CharArrayBuffer feedURI      = new CharArrayBuffer(128);
+  public final CharArrayBuffer pos          = new CharArrayBuffer(8);
+  public final CharArrayBuffer children     = new CharArrayBuffer(128);
+  public long lastModified;
+  public long androidID;
+  public boolean loadInSidebar;
+  public boolean deleted;
+
+  private final BookmarkCursorDecoder decoder;
+
+  public BookmarkRowView(BookmarkCursorDecoder decoder) {
+    this.decoder = decoder;
+  }
+
+  public static boolean isNull(CharArrayBuffer buffer) {
+    return buffer.sizeCopied < 0;
+  }
+
+  private static void copy(Cursor cursor, int column, CharArrayBuffer buffer) {
+    if (column < 0 || cursor.isNull(column)) {
+      buffer.sizeCopied = -1;
+    } else {
+      cursor.copyStringToBuffer(column, buffer);
+    }
+  }
+
+  private static String asString(CharArrayBuffer buffer) {
+    if (isNull(buffer)) {
+      return null;
+    }
+    return new String(buffer.data, 0, buffer.sizeCopied);
+  }
+
+  private static long getLong(Cursor cursor, int column, long absent) {
+    return column < 0 ? absent : cursor.getLong(column);
+  }
+
+  public BookmarkRowView fill(Cursor cursor) {
+    copy(cursor, decoder.guid, guid);
+    copy(cursor, decoder.title, title);
+    copy(cursor, decoder.uri, uri);
+    copy(cursor, decoder.description, description);
+    copy(cursor, decoder.tags, tags);
+    copy(cursor, decoder.keyword, keyword);
+    copy(cursor, decoder.parentID, parentID);
+    copy(cursor, decoder.parentName, parentName);
+    copy(cursor, decoder.type, type);
+    copy(cursor, decoder.generatorURI, generatorURI);
+    copy(cursor, decoder.staticTitle, staticTitle);
+    copy(cursor, decoder.folderName, folderName);
+    copy(cursor, decoder.queryID, queryID);
+    copy(cursor, decoder.siteURI, siteURI);
+    copy(cursor, decoder.feedURI, feedURI);
+    copy(cursor, decoder.pos, pos);
+    copy(cursor, decoder.children, children);
+    lastModified = getLong(cursor, decoder.lastModified, 0);
+    androidID = getLong(cursor, decoder.androidID, -1);
+    loadInSidebar = getLong(cursor, decoder.loadInSidebar, 0) == 1;
+    deleted = getLong(cursor, decoder.deleted, 0) == 1;
+    return this;
+  }
+
+  /**
+   * A new record holding this row's values.
+   */
+  public BookmarkRecord copy() {
+    BookmarkRecord record = new BookmarkRecord();
+    record.guid = asString(guid);
+    record.title = asString(title);
+    record.bookmarkURI = asString(uri);
+    record.description = asString(description);
+    record.tags = asString(tags);
+    record.keyword = asString(keyword);
+    record.parentID = asString(parentID);
+    record.parentName = asString(parentName);
+    record.type = asString(type);
+    record.generatorURI = asString(generatorURI);
+    record.staticTitle = asString(staticTitle);
+    record.folderName = asString(folderName);
+    record.queryID = asString(queryID);
+    record.siteURI = asString(siteURI);
+    record.feedURI = asString(feedURI);
+    record.pos = asString(pos);
+    record.children = asString(children);
+    record.lastModified = lastModified;
+    record.androidID = androidID;
+    record.loadInSidebar = loadInSidebar;
+    record.deleted = deleted;
+    return record;
+  }
+}
@@ -0,0 +1,51 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+/**
+ * {@link PayloadCrypto} that keeps one Cipher and one keyed Mac per thread
+ * for its key bundle, instead of looking up the provider and creating both
+ * for every record. The Cipher is still initialized per record, since each
+ * payload has its own IV; the Mac resets itself after every doFinal.
+ */
+public class CachedPayloadCrypto extends PayloadCrypto {
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>();
+  private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>();
+
+  public CachedPayloadCrypto(byte[] encryptionKey, byte[] hmacKey, long seed) {
+    super(encryptionKey, hmacKey, seed);
+  }
+
+  /**
+   * Same key bundle as keys.
+   */
+  public CachedPayloadCrypto(PayloadCrypto keys, long seed) {
+    super(keys.encryptionKey, keys.hmacKey, seed);
+  }
+
+  @Override
+  protected Cipher cipher() throws GeneralSecurityException {
+    Cipher cipher = ciphers.get();
+    if (cipher == null) {
+      cipher = super.cipher();
+      ciphers.set(cipher);
+    }
+    return cipher;
+  }
+
+  @Override
+  protected Mac mac() throws GeneralSecurityException {
+    Mac mac = macs.get();
+    if (mac == null) {
+      mac = super.mac();
+      macs.set(mac);
+    }
+    return mac;
+  }
+}
@@ -0,0 +1,114 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionFetchRecordsDelegate;
+import org.mozilla.android.sync.repositories.domain.Record;
+
+/**
+ * Fetches an arbitrarily large set of GUIDs by splitting it into chunks that
+ * stay well below SQLite's limit of 999 bound parameters per statement.
+ *
+ * Every chunk is issued up front, so the session's queries overlap. Records
+ * are passed to the delegate's onFetchedRecord as each chunk arrives, and
+ * onFetchCompleted is called once, after the last chunk. If any chunk fails,
+ * onFetchFailed is called once and no completion is reported.
+ */
+public class ChunkedFetcher {
+  public static final int DEFAULT_CHUNK_SIZE = 500;
+
+  public static void fetch(RepositorySession session, String[] guids,
+                           RepositorySessionFetchRecordsDelegate delegate) {
+    fetch(session, guids, DEFAULT_CHUNK_SIZE, delegate);
+  }
+
+  public static void fetch(RepositorySession session, String[] guids, int chunkSize,
+                           RepositorySessionFetchRecordsDelegate delegate) {
+    if (guids == null || guids.length <= chunkSize) {
+      // Nothing to split; let the session handle (or reject) the request as usual.
+      session.fetch(guids, delegate);
+      return;
+    }
+    int chunks = (guids.length + chunkSize - 1) / chunkSize;
+    Collector collector = new Collector(chunks, delegate);
+    for (int i = 0; i < chunks; i++) {
+      int start = i * chunkSize;
+      int length = Math.min(chunkSize, guids.length - start);
+      String[] chunk = new String[length];
+      System.arraycopy(guids, start, chunk, 0, length);
+      session.fetch(chunk, collector.newChunkDelegate());
+    }
+  }
+
+  private static class Collector {
+    private final RepositorySessionFetchRecordsDelegate delegate;
+    private int remaining;
+    private boolean failed = false;
+
+    Collector(int chunks, RepositorySessionFetchRecordsDelegate delegate) {
+      this.remaining = chunks;
+      this.delegate = delegate;
+    }
+
+    synchronized void onRecord(Record record) {
+      if (!failed) {
+        delegate.onFetchedRecord(record);
+      }
+    }
+
+    synchronized void onChunkDone() {
+      remaining--;
+      if (remaining == 0 && !failed) {
+        delegate.onFetchCompleted();
+      }
+    }
+
+    synchronized void onChunkFailed(Exception ex, Record record) {
+      if (!failed) {
+        failed = true;
+        delegate.onFetchFailed(ex, record);
+      }
+    }
+
+    RepositorySessionFetchRecordsDelegate newChunkDelegate() {
+      return new RepositorySessionFetchRecordsDelegate() {
+        private boolean done = false;
+
+        private void finish() {
+          synchronized (Collector.this) {
+            if (done) {
+              return;
+            }
+            done = true;
+          }
+          onChunkDone();
+        }
+
+        @Override
+        public void onFetchFailed(Exception ex, Record record) {
+          onChunkFailed(ex, record);
+        }
+
+        @Override
+        public void onFetchSucceeded(Record[] records) {
+          for (Record record : records) {
+            onRecord(record);
+          }
+          finish();
+        }
+
+        @Override
+        public void onFetchedRecord(Record record) {
+          onRecord(record);
+        }
+
+        @Override
+        public void onFetchCompleted() {
+          finish();
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.HashMap;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Pre-compiled statements for one database connection, keyed by SQL. Each
+ * statement is compiled the first time it's asked for and handed out with its
+ * bindings cleared after that, so hot paths bind parameters instead of
+ * building SQL and ContentValues per call.
+ *
+ * A SQLiteStatement is not thread-safe: use the cache from one thread at a
+ * time, and finish with a statement before asking for it again.
+ */
+public class CompiledStatementCache {
+  private final SQLiteDatabase db;
+  private final HashMap<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+  private int compiled = 0;
+
+  public CompiledStatementCache(SQLiteDatabase db) {
+    this.db = db;
+  }
+
+  public SQLiteDatabase getDatabase() {
+    return db;
+  }
+
+  public synchronized SQLiteStatement get(String sql) {
+    SQLiteStatement statement = statements.get(sql);
+    if (statement == null) {
+      statement = db.compileStatement(sql);
+      statements.put(sql, statement);
+      compiled++;
+    } else {
+      statement.clearBindings();
+    }
+    return statement;
+  }
+
+  /**
+   * The number of times a statement has been compiled, for checking that
+   * repeated calls reuse them.
+   */
+  public synchronized int getCompiledCount() {
+    return compiled;
+  }
+
+  public synchronized void close() {
+    for (SQLiteStatement statement : statements.values()) {
+      statement.close();
+    }
+    statements.clear();
+  }
+
+  public static void bindNullable(SQLiteStatement statement, int index, String value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindString(index, value);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion state for a single in-flight operation.
+ *
+ * This is a WaitHelper, so any delegate bound to it through
+ * {@link DefaultDelegate#setWaitHelper(WaitHelper)} reports here instead of
+ * to the shared test waiter. Unlike the shared waiter, no monitor is held
+ * while the action runs, so the action may call back synchronously, and any
+ * number of handles can be outstanding at once.
+ *
+ * Only the first notification counts; later ones are ignored.
+ */
+public class CompletionHandle extends WaitHelper {
+  private final CountDownLatch latch = new CountDownLatch(1);
+  private final String name;
+  private volatile AssertionError assertion;
+
+  public CompletionHandle(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isDone() {
+    return latch.getCount() == 0;
+  }
+
+  @Override
+  public void performNotify(AssertionError e) {
+    synchronized (latch) {
+      if (isDone()) {
+        return;
+      }
+      this.assertion = e;
+      latch.countDown();
+    }
+  }
+
+  @Override
+  public void performWait(long timeout, Runnable action) throws AssertionError {
+    if (action != null) {
+      try {
+        action.run();
+      } catch (Exception ex) {
+        throw new AssertionError(ex);
+      }
+    }
+    await(timeout);
+  }
+
+  /**
+   * Block until this operation completes or the timeout elapses, rethrowing
+   * any assertion the operation was completed with.
+   */
+  public void await(long timeout) throws AssertionError {
+    try {
+      if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+        throw new TimeoutError("Operation " + name + " did not complete within " + timeout + "ms.");
+      }
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+    if (this.assertion != null) {
+      throw this.assertion;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+
+/**
+ * Tracks any number of concurrently pending operations, each with its own
+ * {@link CompletionHandle}.
+ *
+ * Typical use:
+ *
+ *   ConcurrentWaitHarness harness = new ConcurrentWaitHarness();
+ *   for (Record record : records) {
+ *     ExpectStoredDelegate delegate = new ExpectStoredDelegate(record.guid);
+ *     harness.track(delegate, "store " + record.guid);
+ *     session.store(record, delegate);
+ *   }
+ *   harness.awaitAll(WaitHelper.DEFAULT_TIMEOUT);
+ */
+public class ConcurrentWaitHarness {
+  private final ArrayList<CompletionHandle> handles = new ArrayList<CompletionHandle>();
+  private int completed = 0;
+
+  public synchronized CompletionHandle newHandle(String name) {
+    return track(new CompletionHandle(name));
+  }
+
+  public synchronized CompletionHandle track(CompletionHandle handle) {
+    handles.add(handle);
+    return handle;
+  }
+
+  /**
+   * Route the delegate's notifications to a fresh handle.
+   */
+  public CompletionHandle track(DefaultDelegate delegate, String name) {
+    CompletionHandle handle = newHandle(name);
+    delegate.setWaitHelper(handle);
+    return handle;
+  }
+
+  public synchronized int pending() {
+    int count = 0;
+    for (CompletionHandle handle : handles) {
+      if (!handle.isDone()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The number of operations awaitAll has seen complete successfully, over
+   * the harness's lifetime.
+   */
+  public synchronized int getCompletedCount() {
+    return completed;
+  }
+
+  /**
+   * Wait for every tracked operation, sharing a single deadline between them.
+   * Throws the first failure encountered; completed handles are forgotten
+   * either way, so the harness can be reused.
+   */
+  public void awaitAll(long timeout) throws AssertionError {
+    ArrayList<CompletionHandle> waiting;
+    synchronized (this) {
+      waiting = new ArrayList<CompletionHandle>(handles);
+      handles.clear();
+    }
+    long deadline = System.currentTimeMillis() + timeout;
+    for (CompletionHandle handle : waiting) {
+      handle.await(Math.max(0, deadline - System.currentTimeMillis()));
+      synchronized (this) {
+        completed++;
+      }
+    }
+  }
+}
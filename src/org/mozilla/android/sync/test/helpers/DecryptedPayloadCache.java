@@ -0,0 +1,142 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.android.sync.test.helpers.PayloadCrypto.Envelope;
+
+/**
+ * An LRU cache of decrypted payloads, bounded by an estimate of the bytes it
+ * holds. Entries are keyed by guid, lastModified and the key bundle's
+ * identity, so a record that changed on the server, or a new key bundle,
+ * misses and is decrypted again. A retry of the same records skips the HMAC
+ * and the decrypt.
+ *
+ * Thread-safe. Decryption happens outside the lock, so two threads missing on
+ * the same record may both decrypt it.
+ */
+public class DecryptedPayloadCache {
+  public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+  // Rough per-entry cost beyond the strings: key, entry and map node.
+  private static final int ENTRY_OVERHEAD = 96;
+
+  protected static class Key {
+    public final String guid;
+    public final long lastModified;
+    public final Object keyIdentity;
+
+    public Key(String guid, long lastModified, Object keyIdentity) {
+      this.guid = guid;
+      this.lastModified = lastModified;
+      this.keyIdentity = keyIdentity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return lastModified == other.lastModified &&
+             guid.equals(other.guid) &&
+             keyIdentity.equals(other.keyIdentity);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = guid.hashCode();
+      result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+      return 31 * result + keyIdentity.hashCode();
+    }
+  }
+
+  private final long maxBytes;
+  private final LinkedHashMap<Key, String> entries = new LinkedHashMap<Key, String>(16, 0.75f, true);
+  private long bytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  public DecryptedPayloadCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public DecryptedPayloadCache() {
+    this(DEFAULT_MAX_BYTES);
+  }
+
+  protected static long sizeOf(Key key, String cleartext) {
+    return 2L * (key.guid.length() + cleartext.length()) + ENTRY_OVERHEAD;
+  }
+
+  /**
+   * The cleartext of envelope, from the cache if this guid was decrypted at
+   * lastModified with the same keys, otherwise decrypted with crypto and
+   * cached.
+   */
+  public String decrypt(PayloadCrypto crypto, String guid, long lastModified, Envelope envelope)
+      throws GeneralSecurityException {
+    Key key = new Key(guid, lastModified, crypto.keyIdentity());
+    synchronized (this) {
+      String cached = entries.get(key);
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      misses++;
+    }
+    String cleartext = crypto.decrypt(envelope);
+    put(key, cleartext);
+    return cleartext;
+  }
+
+  protected synchronized void put(Key key, String cleartext) {
+    long size = sizeOf(key, cleartext);
+    if (size > maxBytes) {
+      return;
+    }
+    String previous = entries.put(key, cleartext);
+    if (previous != null) {
+      bytes -= sizeOf(key, previous);
+    }
+    bytes += size;
+    Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      Map.Entry<Key, String> eldest = it.next();
+      bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+      it.remove();
+      evictions++;
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+}
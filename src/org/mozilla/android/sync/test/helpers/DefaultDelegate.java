@@ -6,10 +6,23 @@ package org.mozilla.android.sync.test.helpers;
 import static junit.framework.Assert.fail;
 
 public abstract class DefaultDelegate {
+  protected WaitHelper waitHelper;
+
+  /**
+   * Report to the given helper (usually a {@link CompletionHandle}) instead of
+   * the shared test waiter.
+   */
+  public void setWaitHelper(WaitHelper waitHelper) {
+    this.waitHelper = waitHelper;
+  }
+
   protected WaitHelper testWaiter() {
+    if (waitHelper != null) {
+      return waitHelper;
+    }
     return WaitHelper.getTestWaiter();
   }
-  
+
   protected void sharedFail(String message) {
     try {
       fail(message);
@@ -17,5 +30,5 @@ public abstract class DefaultDelegate {
       testWaiter().performNotify(e);
     }
   }
-  
+
 }
@@ -12,8 +12,6 @@ import java.util.Arrays;
 import org.mozilla.android.sync.repositories.delegates.RepositorySessionFetchRecordsDelegate;
 import org.mozilla.android.sync.repositories.domain.Record;
 
-import android.util.Log;
-
 public class DefaultFetchDelegate extends DefaultDelegate implements RepositorySessionFetchRecordsDelegate {
 
   public ArrayList<Record> records = new ArrayList<Record>();
@@ -29,19 +27,19 @@ public class DefaultFetchDelegate extends DefaultDelegate implements RepositoryS
   }
 
   protected void onDone(ArrayList<Record> records, String[] expected) {
-    Log.i("rnewman", "onDone. Test Waiter is " + testWaiter());
+    TestLog.i("rnewman", "onDone. Test Waiter is " + testWaiter());
     try {
       assertEquals(expected.length, records.size());
       for (Record record : records) {
         assertFalse(-1 == Arrays.binarySearch(expected, record.guid));
       }
-      Log.i("rnewman", "Notifying success.");
+      TestLog.i("rnewman", "Notifying success.");
       testWaiter().performNotify();
     } catch (AssertionError e) {
-      Log.i("rnewman", "Notifying assertion failure.");
+      TestLog.i("rnewman", "Notifying assertion failure.");
       testWaiter().performNotify(e);
     } catch (Exception e) {
-      Log.i("rnewman", "Fucking no.");
+      TestLog.i("rnewman", "Fucking no.");
       testWaiter().performNotify();
     }
   }
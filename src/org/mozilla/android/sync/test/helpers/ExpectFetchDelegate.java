@@ -7,8 +7,6 @@ import java.util.Arrays;
 
 import org.mozilla.android.sync.repositories.domain.Record;
 
-import android.util.Log;
-
 public class ExpectFetchDelegate extends DefaultFetchDelegate {
   private String[] expected;
 
@@ -19,7 +17,7 @@ public class ExpectFetchDelegate extends DefaultFetchDelegate {
 
   @Override
   public void onFetchSucceeded(Record[] records) {
-    Log.i("rnewman", "fetchCallback: " + ((records == null) ? "null" : "" + records.length) + " records.");
+    TestLog.i("rnewman", "fetchCallback: " + ((records == null) ? "null" : "" + records.length) + " records.");
     this.records.addAll(Arrays.asList(records));
     this.onFetchCompleted();
   }
@@ -8,13 +8,11 @@ import static junit.framework.Assert.fail;
 import org.mozilla.android.sync.repositories.InvalidRequestException;
 import org.mozilla.android.sync.repositories.domain.Record;
 
-import android.util.Log;
-
 public class ExpectInvalidRequestFetchDelegate extends DefaultFetchDelegate {
   
   @Override
   public void onFetchFailed(Exception ex, Record rec) {
-    Log.i("rnewman", "ExpectInvalidRequestFetchDelegate got exception " + ex);
+    TestLog.i("rnewman", "ExpectInvalidRequestFetchDelegate got exception " + ex);
     if (ex instanceof InvalidRequestException) {
       onDone();
     } else {
@@ -0,0 +1,69 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Ways to empty a SQLite table without deleting it row by row.
+ *
+ * truncate() issues an unqualified DELETE, which SQLite turns into a single
+ * truncation when the table has no triggers. recreate() drops the table and
+ * runs its schema again. wipeInBackground() renames the full table aside and
+ * creates an empty one in a single transaction, so readers see an empty table
+ * immediately, then drops the old one on the given executor. The schema
+ * must only create the table; named indexes would collide with the ones the
+ * renamed table still owns.
+ */
+public class FastWipe {
+  private static final AtomicInteger retired = new AtomicInteger();
+
+  public static void truncate(SQLiteDatabase db, String table) {
+    db.execSQL("DELETE FROM " + table);
+  }
+
+  public static void recreate(SQLiteDatabase db, String table, String schema) {
+    db.beginTransaction();
+    try {
+      db.execSQL("DROP TABLE IF EXISTS " + table);
+      db.execSQL(schema);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  /**
+   * @return a handle that completes once the old rows have been dropped.
+   */
+  public static CompletionHandle wipeInBackground(final SQLiteDatabase db, String table,
+                                                  String schema, Executor executor) {
+    final String old = table + "_wiped_" + retired.incrementAndGet();
+    db.beginTransaction();
+    try {
+      db.execSQL("ALTER TABLE " + table + " RENAME TO " + old);
+      db.execSQL(schema);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    final CompletionHandle handle = new CompletionHandle("drop " + old);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          db.execSQL("DROP TABLE IF EXISTS " + old);
+          handle.performNotify();
+        } catch (Exception e) {
+          handle.performNotify(new AssertionError(e));
+        }
+      }
+    });
+    return handle;
+  }
+}
@@ -0,0 +1,74 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.domain.HistoryRecord;
+
+/**
+ * Generates history records from a seed: one record per unique URI, each with
+ * a skewed number of visits (most URIs are visited a few times, a few are
+ * visited hundreds of times).
+ *
+ * Visits are encoded the way Sync does it, as a JSON array of
+ * {"date": microseconds, "type": transition}, newest first. dateVisited and
+ * transitionType reflect the newest visit.
+ */
+public class HistoryGenerator extends SeededGenerator {
+  public static final int DEFAULT_MAX_VISITS = 200;
+
+  // Places transition types: link, typed, bookmark, embed, redirects, download.
+  private static final int[] TRANSITIONS = new int[] { 1, 1, 1, 1, 2, 2, 3, 4, 5, 6, 7 };
+  private static final String[] HOSTS = new String[] {
+    "mozilla.org", "example.com", "news.example.net", "wiki.example.org",
+    "search.example.com", "video.example.net", "forum.example.org"
+  };
+
+  private final int maxVisits;
+
+  public HistoryGenerator(long seed, int maxVisits) {
+    super(seed);
+    this.maxVisits = maxVisits;
+  }
+
+  public HistoryGenerator(long seed) {
+    this(seed, DEFAULT_MAX_VISITS);
+  }
+
+  public HistoryRecord[] generate(int count) {
+    HistoryRecord[] records = new HistoryRecord[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = history(i);
+    }
+    return records;
+  }
+
+  protected HistoryRecord history(int index) {
+    HistoryRecord record = new HistoryRecord();
+    record.guid = nextGuid();
+    String host = HOSTS[random.nextInt(HOSTS.length)];
+    record.histURI = "http://" + host + "/page/" + index + "?q=" + random.nextInt(100000);
+    record.title = "Page " + index + " on " + host;
+
+    int visitCount = nextSkewed(maxVisits);
+    long date = nextTimestamp(90);
+    int transition = TRANSITIONS[random.nextInt(TRANSITIONS.length)];
+    record.dateVisited = date;
+    record.transitionType = transition;
+    record.lastModified = date;
+
+    StringBuilder visits = new StringBuilder("[");
+    for (int v = 0; v < visitCount; v++) {
+      if (v > 0) {
+        visits.append(", ");
+        // Walk backwards in time from the newest visit.
+        date -= 1 + (long) (random.nextDouble() * 3 * 24 * 60 * 60 * 1000);
+        transition = TRANSITIONS[random.nextInt(TRANSITIONS.length)];
+      }
+      visits.append("{\"date\": ").append(date * 1000)
+            .append(", \"type\": ").append(transition).append('}');
+    }
+    record.visits = visits.append(']').toString();
+    return record;
+  }
+}
@@ -0,0 +1,246 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.mozilla.android.sync.repositories.Repository;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionCreationDelegate;
+import org.mozilla.android.sync.repositories.domain.Record;
+
+import android.content.Context;
+
+/**
+ * A repository that keeps its records in a map, keyed by GUID.
+ *
+ * Sessions created from the same repository share storage, just like two
+ * sessions against the same database would. Nothing here touches Android
+ * APIs, so it can be used to exercise the RepositorySession contract on a
+ * plain JVM.
+ *
+ * Like the SQLite-backed repositories, storage is indexed on lastModified
+ * (as of the time each record was stored), so guidsSince is answered from
+ * the index without looking at any records.
+ *
+ * Every write is also appended to a change journal in the same critical
+ * section, so callers can ask for exactly what changed (including deletions)
+ * since a sequence number, independent of record timestamps.
+ */
+public class InMemoryRepository extends Repository {
+  protected HashMap<String, Record> records = new HashMap<String, Record>();
+  protected TreeMap<Long, HashSet<String>> modifiedIndex = new TreeMap<Long, HashSet<String>>();
+  protected HashMap<String, Long> indexedModified = new HashMap<String, Long>();
+
+  /**
+   * One entry in the change journal.
+   */
+  public static class Change {
+    public final long sequence;
+    public final String guid;
+    public final boolean deleted;
+
+    public Change(long sequence, String guid, boolean deleted) {
+      this.sequence = sequence;
+      this.guid = guid;
+      this.deleted = deleted;
+    }
+  }
+
+  // Append-only; entry i has sequence number journalBase + i + 1.
+  protected ArrayList<Change> journal = new ArrayList<Change>();
+  protected long journalBase = 0;
+
+  private void unindex(String guid) {
+    Long modified = indexedModified.remove(guid);
+    if (modified == null) {
+      return;
+    }
+    HashSet<String> guids = modifiedIndex.get(modified);
+    guids.remove(guid);
+    if (guids.isEmpty()) {
+      modifiedIndex.remove(modified);
+    }
+  }
+
+  private void index(String guid, long modified) {
+    Long key = Long.valueOf(modified);
+    HashSet<String> guids = modifiedIndex.get(key);
+    if (guids == null) {
+      guids = new HashSet<String>();
+      modifiedIndex.put(key, guids);
+    }
+    guids.add(guid);
+    indexedModified.put(guid, key);
+  }
+
+  private void journal(String guid, boolean deleted) {
+    journal.add(new Change(journalBase + journal.size() + 1, guid, deleted));
+  }
+
+  public synchronized void put(String guid, Record record) {
+    unindex(guid);
+    records.put(guid, record);
+    index(guid, record.lastModified);
+    journal(guid, record.deleted);
+  }
+
+  public synchronized void putAll(Map<String, Record> batch) {
+    for (Map.Entry<String, Record> entry : batch.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  public synchronized Record get(String guid) {
+    return records.get(guid);
+  }
+
+  public synchronized int size() {
+    return records.size();
+  }
+
+  public synchronized void clear() {
+    for (String guid : records.keySet()) {
+      journal(guid, true);
+    }
+    records.clear();
+    modifiedIndex.clear();
+    indexedModified.clear();
+  }
+
+  /**
+   * GUIDs of records modified at or after timestamp, from the index alone.
+   */
+  public synchronized String[] guidsSince(long timestamp) {
+    ArrayList<String> result = new ArrayList<String>();
+    for (HashSet<String> guids : modifiedIndex.tailMap(timestamp).values()) {
+      result.addAll(guids);
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  public synchronized Record[] recordsSince(long timestamp) {
+    ArrayList<Record> result = new ArrayList<Record>();
+    for (HashSet<String> guids : modifiedIndex.tailMap(timestamp).values()) {
+      for (String guid : guids) {
+        result.add(records.get(guid));
+      }
+    }
+    return result.toArray(new Record[result.size()]);
+  }
+
+  /**
+   * The sequence number of the latest change, or 0 if nothing has changed.
+   * Pass this to changesSince next time to get only newer changes.
+   */
+  public synchronized long currentSequence() {
+    return journalBase + journal.size();
+  }
+
+  /**
+   * Every change after the given sequence number, oldest first. Reads only
+   * the tail of the journal, so the cost depends on the number of changes,
+   * not the number of records, and deletions are reported too.
+   *
+   * @return null if the journal has been truncated past sequence; the caller
+   *         must fall back to a full fetch.
+   */
+  public synchronized Change[] changesSince(long sequence) {
+    if (sequence < journalBase) {
+      return null;
+    }
+    int from = (int) Math.min(sequence - journalBase, journal.size());
+    return journal.subList(from, journal.size()).toArray(new Change[journal.size() - from]);
+  }
+
+  /**
+   * Forget journal entries up to and including sequence, once every consumer
+   * has seen them.
+   */
+  public synchronized void truncateJournal(long sequence) {
+    int count = (int) Math.min(Math.max(0, sequence - journalBase), journal.size());
+    journal.subList(0, count).clear();
+    journalBase += count;
+  }
+
+  public synchronized Record[] all() {
+    return records.values().toArray(new Record[records.size()]);
+  }
+
+  /**
+   * An iterator over the records modified at or after timestamp, like a
+   * database cursor. The index is walked lazily, one timestamp at a time: each
+   * step takes the lock, finds the next indexed timestamp after the last one
+   * seen, and copies only that timestamp's GUIDs. Memory doesn't grow with the
+   * collection, and writes during iteration are safe.
+   *
+   * As with a cursor that isn't isolated from its own connection's writes,
+   * records stored ahead of the cursor's position are returned, and a record
+   * rewritten with a later timestamp can be returned again. A record wiped
+   * before it is reached is skipped.
+   */
+  public Iterator<Record> cursor(final long timestamp) {
+    return new Iterator<Record>() {
+      private long nextKey = timestamp;
+      private boolean exhausted = false;
+      private String[] guids = new String[0];
+      private int position = 0;
+      private Record next = null;
+
+      private boolean advance() {
+        synchronized (InMemoryRepository.this) {
+          Long key = exhausted ? null : modifiedIndex.ceilingKey(nextKey);
+          if (key == null) {
+            exhausted = true;
+            return false;
+          }
+          HashSet<String> tied = modifiedIndex.get(key);
+          guids = tied.toArray(new String[tied.size()]);
+          position = 0;
+          exhausted = key.longValue() == Long.MAX_VALUE;
+          nextKey = key.longValue() + 1;
+          return true;
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        while (next == null) {
+          if (position < guids.length) {
+            next = get(guids[position++]);
+          } else if (!advance()) {
+            return false;
+          }
+        }
+        return true;
+      }
+
+      @Override
+      public Record next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Record record = next;
+        next = null;
+        return record;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public void createSession(RepositorySessionCreationDelegate delegate,
+                            Context context) {
+    delegate.onSessionCreated(new InMemoryRepositorySession(this));
+  }
+}
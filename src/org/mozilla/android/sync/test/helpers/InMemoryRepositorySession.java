@@ -0,0 +1,279 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.Executor;
+
+import org.mozilla.android.sync.repositories.InvalidRequestException;
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionFetchRecordsDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionGuidsSinceDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionStoreDelegate;
+import org.mozilla.android.sync.repositories.delegates.RepositorySessionWipeDelegate;
+import org.mozilla.android.sync.repositories.domain.Record;
+import org.mozilla.android.sync.test.helpers.InMemoryRepository.Change;
+
+/**
+ * Session over an {@link InMemoryRepository}.
+ *
+ * By default, work runs and delegates are invoked synchronously on the calling
+ * thread. Give the session an executor, such as a shared
+ * {@link MeteredExecutor}, to run each operation and its callbacks there
+ * instead. Conflicts on store are resolved the same way the Android
+ * repositories do it: the record with the newer lastModified wins.
+ */
+public class InMemoryRepositorySession extends RepositorySession {
+  protected InMemoryRepository storage;
+  protected Executor executor;
+
+  public InMemoryRepositorySession(InMemoryRepository repository) {
+    super(repository);
+    this.storage = repository;
+  }
+
+  public InMemoryRepositorySession(InMemoryRepository repository, Executor executor) {
+    this(repository);
+    this.executor = executor;
+  }
+
+  /**
+   * @param executor runs subsequent operations and their callbacks, or null to
+   *        run them on the calling thread.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  protected void execute(Runnable work) {
+    if (executor == null) {
+      work.run();
+    } else {
+      executor.execute(work);
+    }
+  }
+
+  @Override
+  public void guidsSince(final long timestamp,
+                         final RepositorySessionGuidsSinceDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        delegate.onGuidsSinceSucceeded(storage.guidsSince(timestamp));
+      }
+    });
+  }
+
+  @Override
+  public void fetchSince(final long timestamp,
+                         final RepositorySessionFetchRecordsDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        delegate.onFetchSucceeded(storage.recordsSince(timestamp));
+      }
+    });
+  }
+
+  /**
+   * GUIDs changed after the given journal sequence number, each reported
+   * once, including deleted records. Use
+   * {@link InMemoryRepository#currentSequence()} to find where to resume.
+   */
+  public void guidsChangedSince(final long sequence,
+                                final RepositorySessionGuidsSinceDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        Change[] changes = storage.changesSince(sequence);
+        if (changes == null) {
+          // The journal no longer reaches back that far. Everything is a candidate.
+          delegate.onGuidsSinceSucceeded(storage.guidsSince(0));
+          return;
+        }
+        LinkedHashSet<String> guids = new LinkedHashSet<String>();
+        for (Change change : changes) {
+          guids.add(change.guid);
+        }
+        delegate.onGuidsSinceSucceeded(guids.toArray(new String[guids.size()]));
+      }
+    });
+  }
+
+  /**
+   * Records changed after the given journal sequence number. Records that were
+   * wiped are not returned, but still appear in guidsChangedSince.
+   */
+  public void fetchChangedSince(final long sequence,
+                                final RepositorySessionFetchRecordsDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        Change[] changes = storage.changesSince(sequence);
+        if (changes == null) {
+          delegate.onFetchSucceeded(storage.all());
+          return;
+        }
+        LinkedHashSet<String> guids = new LinkedHashSet<String>();
+        for (Change change : changes) {
+          guids.add(change.guid);
+        }
+        ArrayList<Record> result = new ArrayList<Record>(guids.size());
+        for (String guid : guids) {
+          Record record = storage.get(guid);
+          if (record != null) {
+            result.add(record);
+          }
+        }
+        delegate.onFetchSucceeded(result.toArray(new Record[result.size()]));
+      }
+    });
+  }
+
+  @Override
+  public void fetch(final String[] guids,
+                    final RepositorySessionFetchRecordsDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        if (guids == null || guids.length < 1) {
+          delegate.onFetchFailed(new InvalidRequestException(), null);
+          return;
+        }
+        ArrayList<Record> result = new ArrayList<Record>(guids.length);
+        for (String guid : guids) {
+          Record record = storage.get(guid);
+          if (record != null) {
+            result.add(record);
+          }
+        }
+        delegate.onFetchSucceeded(result.toArray(new Record[result.size()]));
+      }
+    });
+  }
+
+  @Override
+  public void fetchAll(final RepositorySessionFetchRecordsDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        delegate.onFetchSucceeded(storage.all());
+      }
+    });
+  }
+
+  /**
+   * Open a stream over all records modified at or after timestamp. Records
+   * are read from storage as they're requested, like a cursor on a database
+   * connection, so the stream holds no copy of the collection. Stores and
+   * wipes while the stream is open are safe; see InMemoryRepository.cursor
+   * for which of them the stream sees. Streams are driven by the caller, so
+   * they don't use the session's executor.
+   */
+  public RecordStream streamSince(final long timestamp,
+                                  final RepositorySessionFetchRecordsDelegate delegate) {
+    final Iterator<Record> cursor = storage.cursor(timestamp);
+    return new RecordStream() {
+      private boolean done = false;
+
+      @Override
+      public int request(int count) {
+        if (done) {
+          return 0;
+        }
+        int delivered = 0;
+        while (delivered < count && cursor.hasNext()) {
+          Record record = cursor.next();
+          if (record.lastModified >= timestamp) {
+            delegate.onFetchedRecord(record);
+            delivered++;
+          }
+        }
+        if (!cursor.hasNext()) {
+          close();
+          delegate.onFetchCompleted();
+        }
+        return delivered;
+      }
+
+      @Override
+      public void close() {
+        done = true;
+      }
+    };
+  }
+
+  @Override
+  public void store(final Record record, final RepositorySessionStoreDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        if (record == null) {
+          delegate.onStoreFailed(new InvalidRequestException());
+          return;
+        }
+        synchronized (storage) {
+          Record existing = storage.get(record.guid);
+          if (existing == null || existing.lastModified <= record.lastModified) {
+            storage.put(record.guid, record);
+          }
+        }
+        delegate.onStoreSucceeded(record);
+      }
+    });
+  }
+
+  /**
+   * Store a batch of records. Conflicts are resolved for the whole batch
+   * first, including between records in the batch, and the winners are then
+   * committed in one step. The delegate is told about each record in order.
+   */
+  public void storeBatch(final Record[] batch, final RepositorySessionStoreDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        if (batch == null) {
+          delegate.onStoreFailed(new InvalidRequestException());
+          return;
+        }
+        for (Record record : batch) {
+          if (record == null) {
+            delegate.onStoreFailed(new InvalidRequestException());
+            return;
+          }
+        }
+        synchronized (storage) {
+          HashMap<String, Record> winners = new HashMap<String, Record>(batch.length);
+          for (Record record : batch) {
+            Record existing = winners.get(record.guid);
+            if (existing == null) {
+              existing = storage.get(record.guid);
+            }
+            if (existing == null || existing.lastModified <= record.lastModified) {
+              winners.put(record.guid, record);
+            }
+          }
+          storage.putAll(winners);
+        }
+        for (Record record : batch) {
+          delegate.onStoreSucceeded(record);
+        }
+      }
+    });
+  }
+
+  @Override
+  public void wipe(final RepositorySessionWipeDelegate delegate) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        storage.clear();
+        delegate.onWipeSucceeded();
+      }
+    });
+  }
+}
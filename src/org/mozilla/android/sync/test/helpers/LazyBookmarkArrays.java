@@ -0,0 +1,42 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.List;
+
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+/**
+ * Structured, lazily parsed access to a BookmarkRecord's tags and children.
+ * Each is parsed on first access and cached until the record's raw field is
+ * reassigned.
+ */
+public class LazyBookmarkArrays {
+  private final BookmarkRecord record;
+  private LazyJSONStringArray tags;
+  private LazyJSONStringArray children;
+
+  public LazyBookmarkArrays(BookmarkRecord record) {
+    this.record = record;
+  }
+
+  public BookmarkRecord getRecord() {
+    return record;
+  }
+
+  public List<String> tags() {
+    tags = LazyJSONStringArray.forField(tags, record.tags);
+    return tags.get();
+  }
+
+  public List<String> children() {
+    children = LazyJSONStringArray.forField(children, record.children);
+    return children.get();
+  }
+
+  public boolean isParsed() {
+    return (tags != null && tags.isParsed()) ||
+           (children != null && children.isParsed());
+  }
+}
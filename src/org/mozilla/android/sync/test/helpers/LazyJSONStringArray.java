@@ -0,0 +1,83 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONValue;
+
+/**
+ * A JSON array of strings, such as BookmarkRecord.tags or
+ * BookmarkRecord.children, kept as its raw string and parsed on first access.
+ * The parsed list is cached, so the raw string is parsed at most once, and a
+ * record that is only passed along is never parsed.
+ *
+ * A null raw string reads as an empty list. Anything that isn't a JSON array
+ * throws IllegalArgumentException when first read.
+ */
+public class LazyJSONStringArray {
+  private final String raw;
+  private List<String> parsed;
+
+  public LazyJSONStringArray(String raw) {
+    this.raw = raw;
+  }
+
+  public String raw() {
+    return raw;
+  }
+
+  public synchronized boolean isParsed() {
+    return parsed != null;
+  }
+
+  /**
+   * @return an unmodifiable list of the array's elements.
+   */
+  public synchronized List<String> get() {
+    if (parsed == null) {
+      parsed = parse(raw);
+    }
+    return parsed;
+  }
+
+  public int size() {
+    return get().size();
+  }
+
+  public boolean contains(String value) {
+    return get().contains(value);
+  }
+
+  /**
+   * The cached array for raw, reusing cached if it was built from this same
+   * string. Callers keep the returned instance and pass it back in, so a field
+   * that hasn't been reassigned is never parsed twice.
+   */
+  public static LazyJSONStringArray forField(LazyJSONStringArray cached, String raw) {
+    if (cached != null && cached.raw == raw) {
+      return cached;
+    }
+    return new LazyJSONStringArray(raw);
+  }
+
+  protected static List<String> parse(String raw) {
+    if (raw == null) {
+      return Collections.emptyList();
+    }
+    Object value = JSONValue.parse(raw);
+    if (!(value instanceof JSONArray)) {
+      throw new IllegalArgumentException("Not a JSON array: " + raw);
+    }
+    JSONArray array = (JSONArray) value;
+    ArrayList<String> out = new ArrayList<String>(array.size());
+    for (Object element : array) {
+      out.add(element == null ? null : element.toString());
+    }
+    return Collections.unmodifiableList(out);
+  }
+}
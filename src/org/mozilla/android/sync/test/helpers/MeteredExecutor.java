@@ -0,0 +1,126 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size thread pool with a bounded queue, meant to be shared by every
+ * session in a sync instead of starting a thread per operation.
+ *
+ * When the queue is full the submitting thread runs the task itself, which
+ * slows producers down rather than dropping work or growing without bound.
+ *
+ * Tracks the deepest the queue got, the most threads busy at once, how many
+ * distinct threads ran tasks, and how many tasks ran on the submitting thread.
+ */
+public class MeteredExecutor extends ThreadPoolExecutor {
+  public static final int DEFAULT_THREADS = 2;
+  public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+  private final AtomicInteger submitted = new AtomicInteger();
+  private final AtomicInteger callerRuns = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger peakActive = new AtomicInteger();
+  private final AtomicInteger peakQueueDepth = new AtomicInteger();
+  private final Set<Thread> threadsUsed = Collections.synchronizedSet(new HashSet<Thread>());
+
+  public MeteredExecutor(int threads, int queueCapacity) {
+    super(threads, threads, 30, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(queueCapacity),
+          new NamedThreadFactory("session-worker-"));
+    setRejectedExecutionHandler(new CallerRunsPolicy() {
+      @Override
+      public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        callerRuns.incrementAndGet();
+        super.rejectedExecution(task, executor);
+      }
+    });
+    allowCoreThreadTimeOut(true);
+  }
+
+  public MeteredExecutor() {
+    this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  private static void raise(AtomicInteger peak, int value) {
+    int current;
+    while ((current = peak.get()) < value) {
+      if (peak.compareAndSet(current, value)) {
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    submitted.incrementAndGet();
+    super.execute(task);
+    raise(peakQueueDepth, getQueue().size());
+  }
+
+  @Override
+  protected void beforeExecute(Thread thread, Runnable task) {
+    threadsUsed.add(thread);
+    raise(peakActive, active.incrementAndGet());
+  }
+
+  @Override
+  protected void afterExecute(Runnable task, Throwable t) {
+    active.decrementAndGet();
+  }
+
+  public int getSubmittedCount() {
+    return submitted.get();
+  }
+
+  public int getCallerRunsCount() {
+    return callerRuns.get();
+  }
+
+  public int getPeakActiveCount() {
+    return peakActive.get();
+  }
+
+  public int getPeakQueueDepth() {
+    return peakQueueDepth.get();
+  }
+
+  public int getThreadsUsedCount() {
+    return threadsUsed.size();
+  }
+
+  @Override
+  public String toString() {
+    return "submitted " + getSubmittedCount() +
+           ", completed " + getCompletedTaskCount() +
+           ", caller runs " + getCallerRunsCount() +
+           ", peak queue " + getPeakQueueDepth() +
+           ", peak active " + getPeakActiveCount() +
+           ", threads " + getThreadsUsedCount();
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+      Thread thread = new Thread(task, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
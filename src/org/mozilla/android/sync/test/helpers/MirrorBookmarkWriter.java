@@ -0,0 +1,146 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * The mirror's hot write and lookup paths (insert, markDeleted,
+ * updateTitleUri, updateAndroidId, and GUID to row ID) over the helper's
+ * connection, through a {@link CompiledStatementCache}. Each call rebinds a
+ * statement compiled once, where the helper builds SQL and ContentValues
+ * every time.
+ *
+ * Writes the same columns DBUtils.bookmarkFromMirrorCursor reads, so rows
+ * written here read back like rows written by the helper.
+ */
+public class MirrorBookmarkWriter {
+  private static final String TABLE = AndroidBrowserBookmarksDatabaseHelper.TBL_BOOKMARKS;
+
+  private static final String INSERT =
+      "INSERT INTO " + TABLE + " (" +
+      AndroidBrowserBookmarksDatabaseHelper.COL_GUID + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_LAST_MOD + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_DELETED + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_TITLE + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_BMK_URI + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_DESCRIP + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_LOAD_IN_SIDEBAR + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_TAGS + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_KEYWORD + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_ID + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_PARENT_NAME + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_TYPE + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_GENERATOR_URI + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_STATIC_TITLE + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_FOLDER_NAME + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_QUERY_ID + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_SITE_URI + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_FEED_URI + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_POS + ", " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_CHILDREN +
+      ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String WHERE_GUID =
+      " WHERE " + AndroidBrowserBookmarksDatabaseHelper.COL_GUID + " = ?";
+
+  private static final String MARK_DELETED =
+      "UPDATE " + TABLE + " SET " + AndroidBrowserBookmarksDatabaseHelper.COL_DELETED + " = 1" + WHERE_GUID;
+
+  private static final String UPDATE_TITLE_URI =
+      "UPDATE " + TABLE + " SET " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_TITLE + " = ?, " +
+      AndroidBrowserBookmarksDatabaseHelper.COL_BMK_URI + " = ?" + WHERE_GUID;
+
+  private static final String UPDATE_ANDROID_ID =
+      "UPDATE " + TABLE + " SET " + AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID + " = ?" + WHERE_GUID;
+
+  private static final String ID_FOR_GUID =
+      "SELECT " + AndroidBrowserBookmarksDatabaseHelper.COL_ID + " FROM " + TABLE + WHERE_GUID;
+
+  private final CompiledStatementCache statements;
+
+  public MirrorBookmarkWriter(AndroidBrowserBookmarksDatabaseHelper helper) {
+    this.statements = new CompiledStatementCache(helper.getWritableDatabase());
+  }
+
+  public CompiledStatementCache getStatements() {
+    return statements;
+  }
+
+  /**
+   * @return the new row's ID.
+   */
+  public long insert(BookmarkRecord record) {
+    SQLiteStatement insert = statements.get(INSERT);
+    CompiledStatementCache.bindNullable(insert, 1, record.guid);
+    insert.bindLong(2, record.androidID);
+    insert.bindLong(3, record.lastModified);
+    insert.bindLong(4, record.deleted ? 1 : 0);
+    CompiledStatementCache.bindNullable(insert, 5, record.title);
+    CompiledStatementCache.bindNullable(insert, 6, record.bookmarkURI);
+    CompiledStatementCache.bindNullable(insert, 7, record.description);
+    insert.bindLong(8, record.loadInSidebar ? 1 : 0);
+    CompiledStatementCache.bindNullable(insert, 9, record.tags);
+    CompiledStatementCache.bindNullable(insert, 10, record.keyword);
+    CompiledStatementCache.bindNullable(insert, 11, record.parentID);
+    CompiledStatementCache.bindNullable(insert, 12, record.parentName);
+    CompiledStatementCache.bindNullable(insert, 13, record.type);
+    CompiledStatementCache.bindNullable(insert, 14, record.generatorURI);
+    CompiledStatementCache.bindNullable(insert, 15, record.staticTitle);
+    CompiledStatementCache.bindNullable(insert, 16, record.folderName);
+    CompiledStatementCache.bindNullable(insert, 17, record.queryID);
+    CompiledStatementCache.bindNullable(insert, 18, record.siteURI);
+    CompiledStatementCache.bindNullable(insert, 19, record.feedURI);
+    CompiledStatementCache.bindNullable(insert, 20, record.pos);
+    CompiledStatementCache.bindNullable(insert, 21, record.children);
+    return insert.executeInsert();
+  }
+
+  public void markDeleted(String guid) {
+    SQLiteStatement update = statements.get(MARK_DELETED);
+    update.bindString(1, guid);
+    update.execute();
+  }
+
+  public void updateTitleUri(String guid, String title, String uri) {
+    SQLiteStatement update = statements.get(UPDATE_TITLE_URI);
+    CompiledStatementCache.bindNullable(update, 1, title);
+    CompiledStatementCache.bindNullable(update, 2, uri);
+    update.bindString(3, guid);
+    update.execute();
+  }
+
+  public void updateAndroidId(String guid, long androidID) {
+    SQLiteStatement update = statements.get(UPDATE_ANDROID_ID);
+    update.bindLong(1, androidID);
+    update.bindString(2, guid);
+    update.execute();
+  }
+
+  /**
+   * @return the row ID for guid, or -1 if there is none.
+   */
+  public long idForGuid(String guid) {
+    SQLiteStatement query = statements.get(ID_FOR_GUID);
+    query.bindString(1, guid);
+    try {
+      return query.simpleQueryForLong();
+    } catch (SQLiteDoneException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Close the statements. The helper and its connection stay open.
+   */
+  public void close() {
+    statements.close();
+  }
+}
@@ -0,0 +1,60 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.mozilla.android.sync.CryptoRecord;
+import org.mozilla.android.sync.ExtendedJSONObject;
+import org.mozilla.android.sync.repositories.domain.Record;
+
+public class MockRecord extends Record {
+  private int value;
+  public MockRecord(String guid, String collection, long lastModified,
+                    boolean deleted, int value) {
+    super(guid, collection, lastModified, deleted);
+    this.value = value;
+  }
+
+  public int getValue() {
+    return value;
+  }
+
+  @Override
+  public void initFromPayload(CryptoRecord payload) {
+    this.value = ((Long)payload.payload.get("myValue")).intValue();
+  }
+
+  @Override
+  public CryptoRecord getPayload() {
+    ExtendedJSONObject payload = new ExtendedJSONObject();
+    payload.put("myValue", this.value);
+    return new CryptoRecord(payload);
+  }
+
+  /**
+   * The cleartext payload, as it would be encrypted.
+   */
+  public String toJSON() {
+    return "{\"myValue\": " + value + "}";
+  }
+
+  public void initFromJSON(String json) {
+    JSONObject payload = (JSONObject) JSONValue.parse(json);
+    this.value = ((Long)payload.get("myValue")).intValue();
+  }
+
+  public boolean eq(Object in) {
+    if (in == null ||
+        !(in instanceof MockRecord)) {
+      return false;
+    }
+    MockRecord rec = (MockRecord) in;
+    return rec.guid.equals(this.guid) &&
+           rec.collection.equals(this.collection) &&
+           rec.lastModified == this.lastModified &&
+           rec.deleted == this.deleted &&
+           rec.value == this.value;
+  }
+}
@@ -0,0 +1,92 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Applies a transform, such as decrypting or encrypting records, to a batch
+ * across an executor's threads, returning results in input order.
+ *
+ * The batch is cut into contiguous slices, one task per slice, so per-task
+ * overhead is paid per slice rather than per record. Batches smaller than
+ * twice minSlice run on the calling thread.
+ */
+public class ParallelBatch<I, O> {
+  public static final int DEFAULT_MIN_SLICE = 64;
+
+  public interface Transform<I, O> {
+    public O apply(I in) throws Exception;
+  }
+
+  private final ExecutorService executor;
+  private final int slices;
+  private final int minSlice;
+
+  public ParallelBatch(ExecutorService executor, int slices, int minSlice) {
+    this.executor = executor;
+    this.slices = slices;
+    this.minSlice = minSlice;
+  }
+
+  public ParallelBatch(ExecutorService executor) {
+    this(executor, Runtime.getRuntime().availableProcessors(), DEFAULT_MIN_SLICE);
+  }
+
+  protected static <I, O> void applySlice(List<I> in, Object[] out, int from, int to,
+                                          Transform<I, O> transform) throws Exception {
+    for (int i = from; i < to; i++) {
+      out[i] = transform.apply(in.get(i));
+    }
+  }
+
+  /**
+   * @throws Exception the first failure, in input order, if any item fails.
+   */
+  @SuppressWarnings("unchecked")
+  public List<O> apply(final List<I> in, final Transform<I, O> transform) throws Exception {
+    final Object[] out = new Object[in.size()];
+    int count = Math.min(slices, in.size() / minSlice);
+    if (count < 2) {
+      applySlice(in, out, 0, in.size(), transform);
+    } else {
+      ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>(count);
+      int size = (in.size() + count - 1) / count;
+      for (int from = 0; from < in.size(); from += size) {
+        final int start = from;
+        final int end = Math.min(in.size(), from + size);
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            applySlice(in, out, start, end, transform);
+            return null;
+          }
+        }));
+      }
+      Exception failure = null;
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          if (failure == null) {
+            failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+    ArrayList<O> result = new ArrayList<O>(out.length);
+    for (Object o : out) {
+      result.add((O) o);
+    }
+    return result;
+  }
+}
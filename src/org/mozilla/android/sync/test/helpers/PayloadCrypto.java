@@ -0,0 +1,167 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Sync's crypto5 payload scheme, for tests and benchmarks that need realistic
+ * encryption work: AES-256-CBC with PKCS#5 padding and a random IV, and an
+ * HMAC-SHA256 over the Base64 ciphertext, hex encoded.
+ */
+public class PayloadCrypto {
+  public static final String CIPHER = "AES/CBC/PKCS5Padding";
+  public static final String MAC = "HmacSHA256";
+  public static final int KEY_LENGTH = 32;
+  public static final int IV_LENGTH = 16;
+
+  /**
+   * The encrypted form of a payload: what a WBO's payload field holds.
+   */
+  public static class Envelope {
+    public final String ciphertext;
+    public final String iv;
+    public final String hmac;
+
+    public Envelope(String ciphertext, String iv, String hmac) {
+      this.ciphertext = ciphertext;
+      this.iv = iv;
+      this.hmac = hmac;
+    }
+
+    public String toJSON() {
+      return "{\"ciphertext\": \"" + ciphertext + "\", \"IV\": \"" + iv +
+             "\", \"hmac\": \"" + hmac + "\"}";
+    }
+  }
+
+  public static class HMACVerificationException extends GeneralSecurityException {
+    private static final long serialVersionUID = 1L;
+
+    public HMACVerificationException() {
+      super("HMAC mismatch.");
+    }
+  }
+
+  protected final SecretKeySpec encryptionKey;
+  protected final SecretKeySpec hmacKey;
+  private final Random random;
+  private final String keyIdentity;
+
+  protected PayloadCrypto(SecretKeySpec encryptionKey, SecretKeySpec hmacKey, long seed) {
+    this.encryptionKey = encryptionKey;
+    this.hmacKey = hmacKey;
+    this.random = new Random(seed);
+    this.keyIdentity = digestKeys(encryptionKey, hmacKey);
+  }
+
+  public PayloadCrypto(byte[] encryptionKey, byte[] hmacKey, long seed) {
+    this(new SecretKeySpec(encryptionKey, "AES"), new SecretKeySpec(hmacKey, MAC), seed);
+  }
+
+  /**
+   * A key bundle generated from seed. IVs are drawn from the same seed, so
+   * runs are repeatable; that is fine for tests and nothing else.
+   */
+  public static PayloadCrypto withSeededKeys(long seed) {
+    Random random = new Random(seed);
+    byte[] encryptionKey = new byte[KEY_LENGTH];
+    byte[] hmacKey = new byte[KEY_LENGTH];
+    random.nextBytes(encryptionKey);
+    random.nextBytes(hmacKey);
+    return new PayloadCrypto(encryptionKey, hmacKey, seed);
+  }
+
+  private static String digestKeys(SecretKeySpec encryptionKey, SecretKeySpec hmacKey) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(encryptionKey.getEncoded());
+      digest.update(hmacKey.getEncoded());
+      return hex(digest.digest());
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Identifies the key bundle, e.g. for cache keys: equal for instances with
+   * the same keys, different once the keys change. A digest, not the keys.
+   */
+  public Object keyIdentity() {
+    return keyIdentity;
+  }
+
+  protected Cipher cipher() throws GeneralSecurityException {
+    return Cipher.getInstance(CIPHER);
+  }
+
+  protected Mac mac() throws GeneralSecurityException {
+    Mac mac = Mac.getInstance(MAC);
+    mac.init(hmacKey);
+    return mac;
+  }
+
+  protected byte[] nextIV() {
+    byte[] iv = new byte[IV_LENGTH];
+    synchronized (random) {
+      random.nextBytes(iv);
+    }
+    return iv;
+  }
+
+  protected static byte[] utf8(String s) {
+    try {
+      return s.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  protected static String utf8(byte[] b) {
+    try {
+      return new String(b, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  protected static String hex(byte[] b) {
+    char[] out = new char[b.length * 2];
+    for (int i = 0; i < b.length; i++) {
+      out[2 * i] = HEX[(b[i] >> 4) & 0xf];
+      out[2 * i + 1] = HEX[b[i] & 0xf];
+    }
+    return new String(out);
+  }
+
+  public Envelope encrypt(String cleartext) throws GeneralSecurityException {
+    byte[] iv = nextIV();
+    Cipher cipher = cipher();
+    cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new IvParameterSpec(iv));
+    String ciphertext = Base64Codec.encode(cipher.doFinal(utf8(cleartext)));
+    String hmac = hex(mac().doFinal(utf8(ciphertext)));
+    return new Envelope(ciphertext, Base64Codec.encode(iv), hmac);
+  }
+
+  public String decrypt(Envelope envelope) throws GeneralSecurityException {
+    String expected = hex(mac().doFinal(utf8(envelope.ciphertext)));
+    if (!expected.equals(envelope.hmac)) {
+      throw new HMACVerificationException();
+    }
+    Cipher cipher = cipher();
+    cipher.init(Cipher.DECRYPT_MODE, encryptionKey,
+                new IvParameterSpec(Base64Codec.decode(envelope.iv)));
+    return utf8(cipher.doFinal(Base64Codec.decode(envelope.ciphertext)));
+  }
+}
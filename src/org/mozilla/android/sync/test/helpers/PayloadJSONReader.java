@@ -0,0 +1,262 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+/**
+ * Pull reader for a single flat JSON object, such as a decrypted record
+ * payload. Fields are read in order, straight from the text, without
+ * building a tree:
+ *
+ *   PayloadJSONReader reader = new PayloadJSONReader(json);
+ *   while (reader.nextField()) {
+ *     if ("title".equals(reader.key())) {
+ *       record.title = reader.stringValue();
+ *     }
+ *   }
+ *
+ * A value that isn't read is skipped. Nested arrays and objects can be read
+ * as raw JSON text with rawValue(), which is how records already hold fields
+ * like tags, children and visits.
+ */
+public class PayloadJSONReader {
+  private final String json;
+  private int pos;
+  private String key;
+  private boolean valuePending = false;
+  private boolean first = true;
+
+  public PayloadJSONReader(String json) {
+    this.json = json;
+    this.pos = 0;
+    skipWhitespace();
+    expect('{');
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at " + pos + " in payload.");
+  }
+
+  private void skipWhitespace() {
+    while (pos < json.length() && json.charAt(pos) <= ' ') {
+      pos++;
+    }
+  }
+
+  private char peek() {
+    skipWhitespace();
+    if (pos >= json.length()) {
+      throw error("Unexpected end");
+    }
+    return json.charAt(pos);
+  }
+
+  private char next() {
+    if (pos >= json.length()) {
+      throw error("Unexpected end");
+    }
+    return json.charAt(pos++);
+  }
+
+  private void expect(char c) {
+    if (peek() != c) {
+      throw error("Expected '" + c + "'");
+    }
+    pos++;
+  }
+
+  /**
+   * Advance to the next field, skipping the current value if it wasn't read.
+   *
+   * @return false at the end of the object.
+   */
+  public boolean nextField() {
+    if (valuePending) {
+      skipValue();
+    }
+    if (peek() == '}') {
+      pos++;
+      return false;
+    }
+    if (!first) {
+      expect(',');
+    }
+    first = false;
+    if (peek() != '"') {
+      throw error("Expected field name");
+    }
+    key = readString();
+    expect(':');
+    skipWhitespace();
+    valuePending = true;
+    return true;
+  }
+
+  public String key() {
+    return key;
+  }
+
+  public boolean isNull() {
+    return json.startsWith("null", pos);
+  }
+
+  public boolean isString() {
+    return peek() == '"';
+  }
+
+  private void consume() {
+    if (!valuePending) {
+      throw error("Value already read");
+    }
+    valuePending = false;
+  }
+
+  /**
+   * @return the string value, or null for a JSON null.
+   */
+  public String stringValue() {
+    consume();
+    if (isNull()) {
+      pos += 4;
+      return null;
+    }
+    if (peek() != '"') {
+      throw error("Expected string for " + key);
+    }
+    return readString();
+  }
+
+  public long longValue() {
+    consume();
+    int start = pos;
+    if (pos < json.length() && json.charAt(pos) == '-') {
+      pos++;
+    }
+    long value = 0;
+    while (pos < json.length() && Character.isDigit(json.charAt(pos))) {
+      value = value * 10 + (json.charAt(pos++) - '0');
+    }
+    if (pos == start || (pos == start + 1 && json.charAt(start) == '-')) {
+      throw error("Expected number for " + key);
+    }
+    // Tolerate a fractional part or exponent by truncating.
+    while (pos < json.length() && "0123456789.eE+-".indexOf(json.charAt(pos)) >= 0) {
+      pos++;
+    }
+    return json.charAt(start) == '-' ? -value : value;
+  }
+
+  public boolean booleanValue() {
+    consume();
+    if (json.startsWith("true", pos)) {
+      pos += 4;
+      return true;
+    }
+    if (json.startsWith("false", pos)) {
+      pos += 5;
+      return false;
+    }
+    throw error("Expected boolean for " + key);
+  }
+
+  /**
+   * The value exactly as it appears in the payload, e.g. a whole array.
+   */
+  public String rawValue() {
+    consume();
+    int start = pos;
+    skipValueText();
+    return json.substring(start, pos);
+  }
+
+  private void skipValue() {
+    consume();
+    skipValueText();
+  }
+
+  private void skipValueText() {
+    char c = peek();
+    if (c == '"') {
+      skipString();
+    } else if (c == '{' || c == '[') {
+      int depth = 0;
+      do {
+        if (pos >= json.length()) {
+          throw error("Unexpected end");
+        }
+        c = json.charAt(pos);
+        if (c == '"') {
+          skipString();
+          continue;
+        }
+        if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+        pos++;
+      } while (depth > 0);
+    } else {
+      while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+        pos++;
+      }
+    }
+  }
+
+  private void skipString() {
+    pos++;
+    while (true) {
+      char c = next();
+      if (c == '"') {
+        return;
+      }
+      if (c == '\\') {
+        next();
+      }
+    }
+  }
+
+  private String readString() {
+    pos++;
+    int start = pos;
+    // Fast path: no escapes, so the value is a plain substring.
+    while (pos < json.length()) {
+      char c = json.charAt(pos);
+      if (c == '"') {
+        return json.substring(start, pos++);
+      }
+      if (c == '\\') {
+        break;
+      }
+      pos++;
+    }
+    StringBuilder sb = new StringBuilder(json.substring(start, pos));
+    while (true) {
+      char c = next();
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      char e = next();
+      switch (e) {
+      case 'b': sb.append('\b'); break;
+      case 'f': sb.append('\f'); break;
+      case 'n': sb.append('\n'); break;
+      case 'r': sb.append('\r'); break;
+      case 't': sb.append('\t'); break;
+      case 'u':
+        if (pos + 4 > json.length()) {
+          throw error("Unexpected end");
+        }
+        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+        pos += 4;
+        break;
+      default:
+        sb.append(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+/**
+ * Writes a single flat JSON object field by field into one StringBuilder.
+ * Null strings are left out rather than written as null.
+ */
+public class PayloadJSONWriter {
+  private final StringBuilder sb;
+  private boolean first = true;
+
+  public PayloadJSONWriter(int capacity) {
+    sb = new StringBuilder(capacity);
+    sb.append('{');
+  }
+
+  public PayloadJSONWriter() {
+    this(256);
+  }
+
+  private void name(String key) {
+    if (!first) {
+      sb.append(',');
+    }
+    first = false;
+    sb.append('"').append(key).append("\":");
+  }
+
+  public PayloadJSONWriter field(String key, String value) {
+    if (value == null) {
+      return this;
+    }
+    name(key);
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':  sb.append("\\\""); break;
+      case '\\': sb.append("\\\\"); break;
+      case '\n': sb.append("\\n"); break;
+      case '\r': sb.append("\\r"); break;
+      case '\t': sb.append("\\t"); break;
+      default:
+        if (c < ' ') {
+          sb.append(String.format("\\u%04x", (int) c));
+        } else {
+          sb.append(c);
+        }
+      }
+    }
+    sb.append('"');
+    return this;
+  }
+
+  public PayloadJSONWriter field(String key, long value) {
+    name(key);
+    sb.append(value);
+    return this;
+  }
+
+  public PayloadJSONWriter field(String key, boolean value) {
+    name(key);
+    sb.append(value);
+    return this;
+  }
+
+  /**
+   * Write value, already JSON text such as an array, as is.
+   */
+  public PayloadJSONWriter rawField(String key, String value) {
+    if (value == null) {
+      return this;
+    }
+    name(key);
+    sb.append(value);
+    return this;
+  }
+
+  public String finish() {
+    return sb.append('}').toString();
+  }
+}
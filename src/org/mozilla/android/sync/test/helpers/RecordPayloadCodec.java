@@ -0,0 +1,162 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+import org.mozilla.android.sync.repositories.domain.HistoryRecord;
+
+/**
+ * Converts cleartext bookmark and history payloads to and from record fields
+ * directly, with {@link PayloadJSONReader} and {@link PayloadJSONWriter},
+ * instead of going through an ExtendedJSONObject tree and boxed values.
+ *
+ * Field names are Sync's. Array-valued fields (tags, children, visits) stay
+ * JSON text, as the records keep them. Unknown fields are skipped.
+ */
+public class RecordPayloadCodec {
+
+  private static String rawOrNull(PayloadJSONReader reader) {
+    if (reader.isNull()) {
+      reader.stringValue();
+      return null;
+    }
+    return reader.rawValue();
+  }
+
+  // Sync writes pos as a number; BookmarkRecord keeps it as a string.
+  private static String stringOrNumber(PayloadJSONReader reader) {
+    if (reader.isNull() || reader.isString()) {
+      return reader.stringValue();
+    }
+    return Long.toString(reader.longValue());
+  }
+
+  // The other way round: a numeric pos goes out as a number again.
+  private static void numberOrString(PayloadJSONWriter writer, String key, String value) {
+    if (value != null) {
+      try {
+        long number = Long.parseLong(value);
+        if (Long.toString(number).equals(value)) {
+          writer.field(key, number);
+          return;
+        }
+      } catch (NumberFormatException e) {
+        // Not a number; write it as given.
+      }
+    }
+    writer.field(key, value);
+  }
+
+  public static BookmarkRecord decodeBookmark(String json, BookmarkRecord record) {
+    PayloadJSONReader reader = new PayloadJSONReader(json);
+    while (reader.nextField()) {
+      String key = reader.key();
+      if ("id".equals(key)) {
+        record.guid = reader.stringValue();
+      } else if ("type".equals(key)) {
+        record.type = reader.stringValue();
+      } else if ("title".equals(key)) {
+        record.title = reader.stringValue();
+      } else if ("bmkUri".equals(key)) {
+        record.bookmarkURI = reader.stringValue();
+      } else if ("description".equals(key)) {
+        record.description = reader.stringValue();
+      } else if ("loadInSidebar".equals(key)) {
+        record.loadInSidebar = reader.booleanValue();
+      } else if ("tags".equals(key)) {
+        record.tags = rawOrNull(reader);
+      } else if ("keyword".equals(key)) {
+        record.keyword = reader.stringValue();
+      } else if ("parentid".equals(key)) {
+        record.parentID = reader.stringValue();
+      } else if ("parentName".equals(key)) {
+        record.parentName = reader.stringValue();
+      } else if ("generatorUri".equals(key)) {
+        record.generatorURI = reader.stringValue();
+      } else if ("staticTitle".equals(key)) {
+        record.staticTitle = reader.stringValue();
+      } else if ("folderName".equals(key)) {
+        record.folderName = reader.stringValue();
+      } else if ("queryId".equals(key)) {
+        record.queryID = reader.stringValue();
+      } else if ("children".equals(key)) {
+        record.children = rawOrNull(reader);
+      } else if ("siteUri".equals(key)) {
+        record.siteURI = reader.stringValue();
+      } else if ("feedUri".equals(key)) {
+        record.feedURI = reader.stringValue();
+      } else if ("pos".equals(key)) {
+        record.pos = stringOrNumber(reader);
+      } else if ("deleted".equals(key)) {
+        record.deleted = reader.booleanValue();
+      }
+    }
+    return record;
+  }
+
+  public static BookmarkRecord decodeBookmark(String json) {
+    return decodeBookmark(json, new BookmarkRecord());
+  }
+
+  public static String encodeBookmark(BookmarkRecord record) {
+    PayloadJSONWriter writer = new PayloadJSONWriter()
+      .field("id", record.guid)
+      .field("type", record.type)
+      .field("title", record.title)
+      .field("bmkUri", record.bookmarkURI)
+      .field("description", record.description)
+      .field("loadInSidebar", record.loadInSidebar)
+      .rawField("tags", record.tags)
+      .field("keyword", record.keyword)
+      .field("parentid", record.parentID)
+      .field("parentName", record.parentName)
+      .field("generatorUri", record.generatorURI)
+      .field("staticTitle", record.staticTitle)
+      .field("folderName", record.folderName)
+      .field("queryId", record.queryID)
+      .rawField("children", record.children)
+      .field("siteUri", record.siteURI)
+      .field("feedUri", record.feedURI);
+    numberOrString(writer, "pos", record.pos);
+    if (record.deleted) {
+      writer.field("deleted", true);
+    }
+    return writer.finish();
+  }
+
+  public static HistoryRecord decodeHistory(String json, HistoryRecord record) {
+    PayloadJSONReader reader = new PayloadJSONReader(json);
+    while (reader.nextField()) {
+      String key = reader.key();
+      if ("id".equals(key)) {
+        record.guid = reader.stringValue();
+      } else if ("title".equals(key)) {
+        record.title = reader.stringValue();
+      } else if ("histUri".equals(key)) {
+        record.histURI = reader.stringValue();
+      } else if ("visits".equals(key)) {
+        record.visits = rawOrNull(reader);
+      } else if ("deleted".equals(key)) {
+        record.deleted = reader.booleanValue();
+      }
+    }
+    return record;
+  }
+
+  public static HistoryRecord decodeHistory(String json) {
+    return decodeHistory(json, new HistoryRecord());
+  }
+
+  public static String encodeHistory(HistoryRecord record) {
+    PayloadJSONWriter writer = new PayloadJSONWriter()
+      .field("id", record.guid)
+      .field("title", record.title)
+      .field("histUri", record.histURI)
+      .rawField("visits", record.visits);
+    if (record.deleted) {
+      writer.field("deleted", true);
+    }
+    return writer.finish();
+  }
+}
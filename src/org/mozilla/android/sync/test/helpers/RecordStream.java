@@ -0,0 +1,27 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+/**
+ * A fetch whose pace is set by the consumer. Nothing is read until the
+ * consumer asks for it, and only as many records as requested are
+ * materialized, so memory use doesn't depend on the size of the collection.
+ *
+ * Records are delivered through the fetch delegate's onFetchedRecord;
+ * onFetchCompleted is called once the stream is exhausted.
+ */
+public interface RecordStream {
+  /**
+   * Deliver up to count more records.
+   *
+   * @return the number of records delivered; fewer than count means the
+   *         stream is exhausted.
+   */
+  public int request(int count);
+
+  /**
+   * Release the underlying cursor. Safe to call more than once.
+   */
+  public void close();
+}
@@ -0,0 +1,200 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Decrypts WBO payload envelopes ({"ciphertext": ..., "IV": ..., "hmac": ...})
+ * into buffers that are reused from record to record.
+ *
+ * The envelope is scanned in place, with no substrings. Each value is
+ * unescaped into a reusable char array, since JSON writers such as json-simple
+ * escape '/' in Base64 as "\/". The HMAC is computed over the ciphertext's
+ * unescaped characters and compared with the hex digest without building
+ * strings. The ciphertext is Base64-decoded into a reusable array and
+ * decrypted in place. After warm-up, the only allocations per record are the
+ * IvParameterSpec and, if asked for, the cleartext String.
+ *
+ * Not thread-safe; use one decoder per thread.
+ */
+public class ReusableEnvelopeDecoder {
+  private static final String CIPHERTEXT_KEY = "\"ciphertext\"";
+  private static final String IV_KEY = "\"IV\"";
+  private static final String HMAC_KEY = "\"hmac\"";
+
+  private final PayloadCrypto keys;
+  private final Cipher cipher;
+  private final Mac mac;
+
+  private final byte[] iv = new byte[PayloadCrypto.IV_LENGTH];
+  private final byte[] digest;
+  private byte[] ascii = new byte[1024];
+  private char[] text = new char[1024];
+  private CharBuffer textView = CharBuffer.wrap(text);
+  private byte[] data = new byte[1024];
+  private ByteBuffer view = ByteBuffer.wrap(data);
+  private int length = 0;
+
+  // Start and end of the last value found by span(), in the envelope.
+  private int spanStart;
+  private int spanEnd;
+
+  public ReusableEnvelopeDecoder(PayloadCrypto keys) throws GeneralSecurityException {
+    this.keys = keys;
+    this.cipher = Cipher.getInstance(PayloadCrypto.CIPHER);
+    this.mac = Mac.getInstance(PayloadCrypto.MAC);
+    this.mac.init(keys.hmacKey);
+    this.digest = new byte[mac.getMacLength()];
+  }
+
+  private void span(String json, String key) throws GeneralSecurityException {
+    int k = json.indexOf(key);
+    if (k < 0) {
+      throw new GeneralSecurityException("Envelope has no " + key + ".");
+    }
+    int colon = json.indexOf(':', k + key.length());
+    int start = colon < 0 ? -1 : json.indexOf('"', colon) + 1;
+    int end = -1;
+    if (start > 0) {
+      for (int i = start; i < json.length(); i++) {
+        char c = json.charAt(i);
+        if (c == '"') {
+          end = i;
+          break;
+        }
+        if (c == '\\') {
+          i++;
+        }
+      }
+    }
+    if (end < 0) {
+      throw new GeneralSecurityException("Malformed envelope value for " + key + ".");
+    }
+    spanStart = start;
+    spanEnd = end;
+  }
+
+  /**
+   * Find key's value and unescape it into text at offset.
+   *
+   * @return the end of the unescaped value in text.
+   */
+  private int unescape(String json, String key, int offset) throws GeneralSecurityException {
+    span(json, key);
+    int needed = offset + spanEnd - spanStart;
+    if (text.length < needed) {
+      text = Arrays.copyOf(text, needed * 2);
+      textView = CharBuffer.wrap(text);
+    }
+    int o = offset;
+    for (int i = spanStart; i < spanEnd; i++) {
+      char c = json.charAt(i);
+      if (c == '\\') {
+        c = json.charAt(++i);
+        if (c == 'u') {
+          int value = 0;
+          for (int j = 1; j <= 4; j++) {
+            int digit = i + j < spanEnd ? hexValue(json.charAt(i + j)) : -1;
+            if (digit < 0) {
+              throw new GeneralSecurityException("Malformed envelope value for " + key + ".");
+            }
+            value = value << 4 | digit;
+          }
+          c = (char) value;
+          i += 4;
+        }
+      }
+      text[o++] = c;
+    }
+    return o;
+  }
+
+  private static int hexValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Verify and decrypt envelope. The cleartext is then available from
+   * cleartext() or cleartextString() until the next call.
+   *
+   * @return the cleartext length in bytes.
+   */
+  public int decrypt(String envelope) throws GeneralSecurityException {
+    // HMAC over the Base64 ciphertext text.
+    int ciphertextEnd = unescape(envelope, CIPHERTEXT_KEY, 0);
+    if (ascii.length < ciphertextEnd) {
+      ascii = new byte[ciphertextEnd * 2];
+    }
+    for (int i = 0; i < ciphertextEnd; i++) {
+      ascii[i] = (byte) text[i];
+    }
+    mac.update(ascii, 0, ciphertextEnd);
+    mac.doFinal(digest, 0);
+
+    int hmacEnd = unescape(envelope, HMAC_KEY, ciphertextEnd);
+    boolean match = hmacEnd - ciphertextEnd == digest.length * 2;
+    for (int i = 0; match && i < digest.length; i++) {
+      int hi = hexValue(text[ciphertextEnd + 2 * i]);
+      int lo = hexValue(text[ciphertextEnd + 2 * i + 1]);
+      match = (hi << 4 | lo) == (digest[i] & 0xff) && hi >= 0 && lo >= 0;
+    }
+    if (!match) {
+      throw new PayloadCrypto.HMACVerificationException();
+    }
+
+    // The IV goes after the ciphertext, over the HMAC.
+    int ivEnd = unescape(envelope, IV_KEY, ciphertextEnd);
+    if (Base64Codec.decodedLength(textView, ciphertextEnd, ivEnd) != iv.length) {
+      throw new GeneralSecurityException("Bad IV length.");
+    }
+    Base64Codec.decode(textView, ciphertextEnd, ivEnd, iv, 0);
+
+    int encrypted = Base64Codec.decodedLength(textView, 0, ciphertextEnd);
+    if (data.length < encrypted) {
+      data = new byte[encrypted * 2];
+      view = ByteBuffer.wrap(data);
+    }
+    Base64Codec.decode(textView, 0, ciphertextEnd, data, 0);
+
+    cipher.init(Cipher.DECRYPT_MODE, keys.encryptionKey, new IvParameterSpec(iv));
+    length = cipher.doFinal(data, 0, encrypted, data, 0);
+    return length;
+  }
+
+  /**
+   * The last cleartext, as a view of the decoder's buffer. Overwritten by the
+   * next decrypt().
+   */
+  public ByteBuffer cleartext() {
+    view.clear();
+    view.limit(length);
+    return view;
+  }
+
+  public String cleartextString() {
+    try {
+      return new String(data, 0, length, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
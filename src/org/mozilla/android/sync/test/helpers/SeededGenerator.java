@@ -0,0 +1,74 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Base for deterministic fixture generators: the same seed always produces
+ * the same GUIDs, timestamps and contents, so scale tests and benchmarks are
+ * repeatable.
+ */
+public abstract class SeededGenerator {
+  private static final String GUID_ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+  public static final int GUID_LENGTH = 12;
+  public static final long BASE_TIMESTAMP = 1320000000000L;
+
+  protected final Random random;
+  private final HashSet<String> issuedGuids = new HashSet<String>();
+
+  public SeededGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * A random GUID, never one this generator has returned before.
+   */
+  public String nextGuid() {
+    char[] guid = new char[GUID_LENGTH];
+    String result;
+    do {
+      for (int i = 0; i < GUID_LENGTH; i++) {
+        guid[i] = GUID_ALPHABET.charAt(random.nextInt(GUID_ALPHABET.length()));
+      }
+      result = new String(guid);
+    } while (!issuedGuids.add(result));
+    return result;
+  }
+
+  /**
+   * A timestamp within the given number of days after BASE_TIMESTAMP.
+   */
+  protected long nextTimestamp(int days) {
+    return BASE_TIMESTAMP + (long) (random.nextDouble() * days * 24L * 60 * 60 * 1000);
+  }
+
+  protected <T> T pick(T[] choices) {
+    return choices[random.nextInt(choices.length)];
+  }
+
+  /**
+   * Skewed towards small values, with a long tail up to max (inclusive): most
+   * folders are small and most URIs are visited a few times, but some are huge.
+   */
+  protected int nextSkewed(int max) {
+    double r = random.nextDouble();
+    return 1 + (int) ((max - 1) * r * r * r);
+  }
+
+  protected static String jsonStringArray(Iterable<String> values) {
+    StringBuilder sb = new StringBuilder("[");
+    boolean first = true;
+    for (String value : values) {
+      if (!first) {
+        sb.append(", ");
+      }
+      sb.append('"').append(value).append('"');
+      first = false;
+    }
+    return sb.append(']').toString();
+  }
+}
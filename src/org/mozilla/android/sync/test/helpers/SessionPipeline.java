@@ -0,0 +1,140 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.mozilla.android.sync.repositories.RepositorySession;
+import org.mozilla.android.sync.repositories.domain.Record;
+
+/**
+ * Queues operations against a session and issues them in submission order on
+ * a single worker thread, without waiting for each to finish before issuing
+ * the next. Each operation returns a {@link CompletionHandle}.
+ *
+ *   SessionPipeline pipeline = new SessionPipeline(session);
+ *   for (Record record : records) {
+ *     pipeline.store(record, new ExpectStoredDelegate(record.guid));
+ *   }
+ *   pipeline.drain(WaitHelper.DEFAULT_TIMEOUT);
+ *   pipeline.close();
+ *
+ * At most maxInFlight operations are outstanding at once; submitting more
+ * blocks the caller until one completes.
+ */
+public class SessionPipeline {
+  public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+
+  private final RepositorySession session;
+  private final ExecutorService worker = Executors.newSingleThreadExecutor();
+  private final ConcurrentWaitHarness harness = new ConcurrentWaitHarness();
+  private final Semaphore window;
+
+  public SessionPipeline(RepositorySession session, int maxInFlight) {
+    this.session = session;
+    this.window = new Semaphore(maxInFlight);
+  }
+
+  public SessionPipeline(RepositorySession session) {
+    this(session, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Frees its slot in the window the first time it's notified.
+   */
+  private class PipelineHandle extends CompletionHandle {
+    public PipelineHandle(String name) {
+      super(name);
+    }
+
+    @Override
+    public void performNotify(AssertionError e) {
+      boolean first;
+      synchronized (this) {
+        first = !isDone();
+        super.performNotify(e);
+      }
+      if (first) {
+        window.release();
+      }
+    }
+  }
+
+  /**
+   * Queue an arbitrary operation. The operation must eventually notify
+   * delegate, which is bound to the returned handle.
+   */
+  public CompletionHandle submit(String name, DefaultDelegate delegate, final Runnable operation) {
+    try {
+      window.acquire();
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+    final CompletionHandle handle = new PipelineHandle(name);
+    delegate.setWaitHelper(handle);
+    harness.track(handle);
+    worker.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          operation.run();
+        } catch (Exception e) {
+          handle.performNotify(new AssertionError(e));
+        }
+      }
+    });
+    return handle;
+  }
+
+  public CompletionHandle store(final Record record, final DefaultStoreDelegate delegate) {
+    return submit("store " + record.guid, delegate, new Runnable() {
+      @Override
+      public void run() {
+        session.store(record, delegate);
+      }
+    });
+  }
+
+  public CompletionHandle fetch(final String[] guids, final DefaultFetchDelegate delegate) {
+    return submit("fetch", delegate, new Runnable() {
+      @Override
+      public void run() {
+        session.fetch(guids, delegate);
+      }
+    });
+  }
+
+  public CompletionHandle fetchAll(final DefaultFetchDelegate delegate) {
+    return submit("fetchAll", delegate, new Runnable() {
+      @Override
+      public void run() {
+        session.fetchAll(delegate);
+      }
+    });
+  }
+
+  public int pending() {
+    return harness.pending();
+  }
+
+  /**
+   * Operations seen to complete by drain() so far.
+   */
+  public int getCompletedCount() {
+    return harness.getCompletedCount();
+  }
+
+  /**
+   * Wait for everything submitted so far.
+   */
+  public void drain(long timeout) throws AssertionError {
+    harness.awaitAll(timeout);
+  }
+
+  public void close() {
+    worker.shutdown();
+  }
+}
@@ -0,0 +1,172 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.TreeSet;
+
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.Browser;
+
+/**
+ * Watches the stock bookmarks for changes between syncs so that the next
+ * stock-to-mirror reconciliation only has to read the rows that changed.
+ *
+ * Platforms that report which row changed (onChange with a URI, API 16 and
+ * up) add that row's android ID to the dirty set. A change without a row ID,
+ * including every change on older platforms, loses the dirty set, and the next
+ * reconcile() has to check the whole table. So does a freshly registered
+ * observer, since anything may have changed before it was watching.
+ */
+public class StockBookmarkObserver extends ContentObserver {
+  private final ContentResolver resolver;
+  private final TreeSet<Long> dirty = new TreeSet<Long>();
+  private boolean lost = true;
+  private boolean changed = false;
+  private int fullScans = 0;
+
+  public StockBookmarkObserver(ContentResolver resolver) {
+    super(null);
+    this.resolver = resolver;
+  }
+
+  public void register() {
+    resolver.registerContentObserver(Browser.BOOKMARKS_URI, true, this);
+  }
+
+  public void unregister() {
+    resolver.unregisterContentObserver(this);
+  }
+
+  @Override
+  public void onChange(boolean selfChange) {
+    onChange(selfChange, null);
+  }
+
+  // Called by the platform directly from API 16.
+  public synchronized void onChange(boolean selfChange, Uri uri) {
+    long id = -1;
+    if (uri != null) {
+      try {
+        id = ContentUris.parseId(uri);
+      } catch (RuntimeException e) {
+        // Not a row URI.
+      }
+    }
+    if (id < 0) {
+      lost = true;
+      dirty.clear();
+    } else if (!lost) {
+      dirty.add(id);
+    }
+    changed = true;
+    notifyAll();
+  }
+
+  public synchronized boolean isLost() {
+    return lost;
+  }
+
+  public synchronized int dirtyCount() {
+    return dirty.size();
+  }
+
+  /**
+   * How many reconciles have had to fall back to a full merge join.
+   */
+  public synchronized int fullScanCount() {
+    return fullScans;
+  }
+
+  /**
+   * Wait until a change has been observed since the last reconcile().
+   */
+  public synchronized boolean awaitChange(long timeout) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    while (!changed) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      wait(remaining);
+    }
+    return true;
+  }
+
+  /**
+   * Reconcile stock against the mirror and reset the dirty set.
+   *
+   * With an intact dirty set, only the dirty rows are read: stock bookmarks
+   * and mirror rows with those android IDs. A dirty ID that isn't a bookmark,
+   * such as a history row, matches neither and costs nothing further.
+   *
+   * Otherwise the change may have been anything, including a history visit;
+   * BOOKMARKS_URI covers history before API 11. If the bookmark fingerprints
+   * of stock and mirror still agree, there is nothing to reconcile. Only if
+   * they don't is this a full {@link BookmarkMergeJoin}.
+   */
+  public void reconcile(AndroidBrowserBookmarksDatabaseHelper helper,
+                        BookmarkMergeJoin.Listener listener) {
+    final TreeSet<Long> ids;
+    synchronized (this) {
+      ids = lost ? null : new TreeSet<Long>(dirty);
+      dirty.clear();
+      lost = false;
+      changed = false;
+    }
+    if (ids != null && ids.isEmpty()) {
+      return;
+    }
+    if (ids == null &&
+        BookmarkFingerprint.ofStock(resolver).sameContent(BookmarkFingerprint.ofMirror(helper))) {
+      return;
+    }
+    if (ids == null) {
+      synchronized (this) {
+        fullScans++;
+      }
+    }
+
+    Cursor stock = ids == null ? BookmarkMergeJoin.queryStock(resolver) : queryStock(ids);
+    Cursor mirror = ids == null ? helper.fetchAllOrderByAndroidId() : queryMirror(helper, ids);
+    try {
+      BookmarkMergeJoin.run(stock, mirror, listener);
+    } finally {
+      stock.close();
+      mirror.close();
+    }
+  }
+
+  private static String in(String column, TreeSet<Long> ids) {
+    StringBuilder selection = new StringBuilder(column + " IN (");
+    boolean first = true;
+    for (Long id : ids) {
+      if (!first) {
+        selection.append(", ");
+      }
+      selection.append(id.longValue());
+      first = false;
+    }
+    return selection.append(')').toString();
+  }
+
+  protected Cursor queryStock(TreeSet<Long> ids) {
+    return resolver.query(Browser.BOOKMARKS_URI, null,
+                          Browser.BookmarkColumns.BOOKMARK + " = 1 AND " +
+                          in(Browser.BookmarkColumns._ID, ids), null,
+                          Browser.BookmarkColumns._ID);
+  }
+
+  protected Cursor queryMirror(AndroidBrowserBookmarksDatabaseHelper helper, TreeSet<Long> ids) {
+    return helper.getWritableDatabase().query(AndroidBrowserBookmarksDatabaseHelper.TBL_BOOKMARKS, null,
+                                              in(AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID, ids),
+                                              null, null, null,
+                                              AndroidBrowserBookmarksDatabaseHelper.COL_ANDROID_ID);
+  }
+}
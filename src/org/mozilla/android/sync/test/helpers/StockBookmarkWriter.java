@@ -0,0 +1,108 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import java.util.ArrayList;
+
+import org.mozilla.android.sync.repositories.android.AndroidBrowserBookmarksDatabaseHelper;
+import org.mozilla.android.sync.repositories.android.DBUtils;
+import org.mozilla.android.sync.repositories.domain.BookmarkRecord;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.RemoteException;
+import android.provider.Browser;
+
+/**
+ * Writes bookmarks into the stock browser in batches: inserts are gathered
+ * and sent with a single applyBatch call, one IPC per batch instead of one
+ * per bookmark. The android IDs of the new rows are then written back to the
+ * mirror in a single transaction.
+ *
+ *   StockBookmarkWriter writer = new StockBookmarkWriter(resolver, helper);
+ *   for (BookmarkRecord record : records) {
+ *     writer.insert(record);
+ *   }
+ *   writer.flush();
+ */
+public class StockBookmarkWriter {
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  private final ContentResolver resolver;
+  private final AndroidBrowserBookmarksDatabaseHelper helper;
+  private final int batchSize;
+  private final String authority = Browser.BOOKMARKS_URI.getAuthority();
+
+  private final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+  private final ArrayList<BookmarkRecord> records = new ArrayList<BookmarkRecord>();
+
+  public StockBookmarkWriter(ContentResolver resolver,
+                             AndroidBrowserBookmarksDatabaseHelper helper,
+                             int batchSize) {
+    this.resolver = resolver;
+    this.helper = helper;
+    this.batchSize = batchSize;
+  }
+
+  public StockBookmarkWriter(ContentResolver resolver,
+                             AndroidBrowserBookmarksDatabaseHelper helper) {
+    this(resolver, helper, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Queue an insert of record's title and URI. The batch is sent once it
+   * reaches the batch size. Once sent, record.androidID holds the new row's
+   * ID. If record is in the mirror, its android ID is updated there too.
+   */
+  public void insert(BookmarkRecord record) {
+    operations.add(ContentProviderOperation.newInsert(Browser.BOOKMARKS_URI)
+        .withValue(Browser.BookmarkColumns.BOOKMARK, 1)
+        .withValue(Browser.BookmarkColumns.TITLE, record.title)
+        .withValue(Browser.BookmarkColumns.URL, record.bookmarkURI)
+        .build());
+    records.add(record);
+    if (operations.size() >= batchSize) {
+      flush();
+    }
+  }
+
+  public int pending() {
+    return operations.size();
+  }
+
+  /**
+   * Send whatever is queued.
+   */
+  public void flush() {
+    if (operations.isEmpty()) {
+      return;
+    }
+    ContentProviderResult[] results;
+    try {
+      results = resolver.applyBatch(authority, operations);
+    } catch (RemoteException e) {
+      throw new IllegalStateException("Batch of " + operations.size() + " stock inserts failed.", e);
+    } catch (OperationApplicationException e) {
+      throw new IllegalStateException("Batch of " + operations.size() + " stock inserts failed.", e);
+    }
+
+    SQLiteDatabase db = helper.getWritableDatabase();
+    db.beginTransaction();
+    try {
+      for (int i = 0; i < results.length; i++) {
+        BookmarkRecord record = records.get(i);
+        record.androidID = DBUtils.getAndroidIdFromUri(results[i].uri);
+        helper.updateAndroidId(record.guid, record.androidID);
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    operations.clear();
+    records.clear();
+  }
+}
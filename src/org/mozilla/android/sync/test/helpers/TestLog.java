@@ -0,0 +1,42 @@
+/* Any copyright is dedicated to the Public Domain.
+   http://creativecommons.org/publicdomain/zero/1.0/ */
+
+package org.mozilla.android.sync.test.helpers;
+
+import android.util.Log;
+
+/**
+ * Logs through android.util.Log on a device, and to stdout on a plain JVM,
+ * where the android.jar stubs throw on every call.
+ */
+public class TestLog {
+  private static Boolean haveAndroidLog = null;
+
+  private static synchronized boolean haveAndroidLog() {
+    if (haveAndroidLog == null) {
+      try {
+        Log.isLoggable("TestLog", Log.INFO);
+        haveAndroidLog = Boolean.TRUE;
+      } catch (RuntimeException e) {
+        haveAndroidLog = Boolean.FALSE;
+      }
+    }
+    return haveAndroidLog.booleanValue();
+  }
+
+  public static void i(String tag, String message) {
+    if (haveAndroidLog()) {
+      Log.i(tag, message);
+    } else {
+      System.out.println(tag + ": " + message);
+    }
+  }
+
+  public static void w(String tag, String message) {
+    if (haveAndroidLog()) {
+      Log.w(tag, message);
+    } else {
+      System.err.println(tag + ": " + message);
+    }
+  }
+}
@@ -3,15 +3,35 @@
 
 package org.mozilla.android.sync.test.helpers;
 
-import android.util.Log;
-
 /**
  * Implements waiting for asynchronous test events.
+ *
+ * The shared instance returned by getTestWaiter supports one outstanding
+ * wait at a time. To have several operations in flight at once, give each
+ * one its own {@link CompletionHandle} (see {@link ConcurrentWaitHarness}).
+ *
  * @author rnewman
  *
  */
 public class WaitHelper {
+  /**
+   * How long performWait will block before giving up, in milliseconds.
+   */
+  public static final long DEFAULT_TIMEOUT = 60000;
+
+  /**
+   * Thrown from performWait when nobody notifies us before the deadline.
+   */
+  public static class TimeoutError extends AssertionError {
+    private static final long serialVersionUID = 8364929432410372127L;
+
+    public TimeoutError(String message) {
+      super(message);
+    }
+  }
+
   AssertionError lastAssertion = null;
+  boolean notified = false;
 
   /**
    * We take a Runnable as a parameter so that it'll be invoked inside the
@@ -21,11 +41,14 @@ public class WaitHelper {
    * action *must* start a new thread before attempting to wait or notify
    * this helper, otherwise this trick doesn't work!
    *
+   * @param timeout
+   *        milliseconds to wait for a notification before failing.
    * @param action
    * @throws AssertionError
    */
-  public synchronized void performWait(Runnable action) throws AssertionError {
-    Log.i("WaitHelper", "performWait called.");
+  public synchronized void performWait(long timeout, Runnable action) throws AssertionError {
+    TestLog.i("WaitHelper", "performWait called.");
+    this.notified = false;
     try {
       if (action != null) {
         try {
@@ -34,7 +57,14 @@ public class WaitHelper {
           throw new AssertionError(ex);
         }
       }
-      WaitHelper.this.wait();
+      long deadline = System.currentTimeMillis() + timeout;
+      while (!this.notified) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          throw new TimeoutError("No notification within " + timeout + "ms.");
+        }
+        WaitHelper.this.wait(remaining);
+      }
       // Rethrow any assertion with which we were notified.
       if (this.lastAssertion != null) {
         AssertionError e = this.lastAssertion;
@@ -46,25 +76,30 @@ public class WaitHelper {
     }
   }
 
-  public synchronized void performWait() throws AssertionError {
+  public void performWait(Runnable action) throws AssertionError {
+    this.performWait(DEFAULT_TIMEOUT, action);
+  }
+
+  public void performWait() throws AssertionError {
     this.performWait(null);
   }
 
   public synchronized void performNotify(AssertionError e) {
     if (e != null) {
-      Log.i("WaitHelper", "performNotify called with AssertionError " + e);
+      TestLog.i("WaitHelper", "performNotify called with AssertionError " + e);
     }
     this.lastAssertion = e;
+    this.notified = true;
     WaitHelper.this.notify();
   }
 
   public void performNotify() {
-    Log.i("WaitHelper", "performNotify called.");
+    TestLog.i("WaitHelper", "performNotify called.");
     this.performNotify(null);
   }
 
   private static WaitHelper singleWaiter;
-  public static WaitHelper getTestWaiter() {
+  public static synchronized WaitHelper getTestWaiter() {
     if (singleWaiter == null) {
       singleWaiter = new WaitHelper();
     }